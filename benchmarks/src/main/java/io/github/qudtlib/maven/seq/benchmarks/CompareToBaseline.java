@@ -0,0 +1,168 @@
+package io.github.qudtlib.maven.seq.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Compares JMH results (written with <code>-rf json</code>) against a committed baseline and exits
+ * with status 1 if any benchmark is slower than its baseline by more than the allowed percentage.
+ *
+ * <p>Usage: <code>CompareToBaseline &lt;baseline.json&gt; &lt;results.json&gt;
+ * [maxRegressionPercent]</code>
+ */
+public final class CompareToBaseline {
+
+    private CompareToBaseline() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println(
+                    "Usage: CompareToBaseline <baseline.json> <results.json> [maxRegressionPercent]");
+            System.exit(2);
+        }
+        double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : 25.0;
+        Map<String, Double> baseline = readScores(Path.of(args[0]));
+        Map<String, Double> results = readScores(Path.of(args[1]));
+        int regressions = 0;
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            Double base = baseline.get(result.getKey());
+            if (base == null || base <= 0) {
+                System.out.printf("NEW       %-90s %12.3f%n", result.getKey(), result.getValue());
+                continue;
+            }
+            double change = (result.getValue() - base) / base * 100;
+            boolean regressed = change > maxRegression;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf(
+                    "%-9s %-90s %12.3f -> %12.3f (%+.1f%%)%n",
+                    regressed ? "REGRESSED" : "OK",
+                    result.getKey(),
+                    base,
+                    result.getValue(),
+                    change);
+        }
+        if (regressions > 0) {
+            System.out.printf(
+                    "%d benchmark(s) regressed by more than %.1f%%%n", regressions, maxRegression);
+            System.exit(1);
+        }
+    }
+
+    /** Reads "benchmark{params}" to primary score from a JMH JSON result file. */
+    @SuppressWarnings("unchecked")
+    static Map<String, Double> readScores(Path file) throws IOException {
+        Object parsed = new JsonParser(Files.readString(file, StandardCharsets.UTF_8)).parse();
+        Map<String, Double> scores = new TreeMap<>();
+        for (Object entry : (List<Object>) parsed) {
+            Map<String, Object> run = (Map<String, Object>) entry;
+            Map<String, Object> params =
+                    new TreeMap<>((Map<String, Object>) run.getOrDefault("params", Map.of()));
+            Map<String, Object> metric = (Map<String, Object>) run.get("primaryMetric");
+            scores.put(run.get("benchmark") + params.toString(), (Double) metric.get("score"));
+        }
+        return scores;
+    }
+
+    /** Just enough JSON to read JMH result files. */
+    static final class JsonParser {
+        private final String text;
+        private int pos;
+
+        JsonParser(String text) {
+            this.text = text;
+        }
+
+        Object parse() {
+            skipWhitespace();
+            char c = text.charAt(pos);
+            if (c == '{') {
+                Map<String, Object> map = new LinkedHashMap<>();
+                pos++;
+                skipWhitespace();
+                if (text.charAt(pos) == '}') {
+                    pos++;
+                    return map;
+                }
+                do {
+                    skipWhitespace();
+                    String key = parseString();
+                    skipWhitespace();
+                    expect(':');
+                    map.put(key, parse());
+                    skipWhitespace();
+                } while (text.charAt(pos++) == ',');
+                return map;
+            } else if (c == '[') {
+                List<Object> list = new ArrayList<>();
+                pos++;
+                skipWhitespace();
+                if (text.charAt(pos) == ']') {
+                    pos++;
+                    return list;
+                }
+                do {
+                    list.add(parse());
+                    skipWhitespace();
+                } while (text.charAt(pos++) == ',');
+                return list;
+            } else if (c == '"') {
+                return parseString();
+            } else if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            } else if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            } else if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            } else if (text.startsWith("NaN", pos)) {
+                pos += 3;
+                return Double.NaN;
+            }
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            return Double.parseDouble(text.substring(start, pos));
+        }
+
+        private String parseString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            char c;
+            while ((c = text.charAt(pos++)) != '"') {
+                if (c == '\\') {
+                    c = text.charAt(pos++);
+                    if (c == 'u') {
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        continue;
+                    }
+                    c = c == 'n' ? '\n' : c == 't' ? '\t' : c == 'r' ? '\r' : c;
+                }
+                sb.append(c);
+            }
+            return sb.toString();
+        }
+
+        private void expect(char expected) {
+            if (text.charAt(pos) != expected) {
+                throw new IllegalArgumentException(
+                        "Expected '" + expected + "' at position " + pos + " of JMH result file");
+            }
+            pos++;
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.qudtlib.maven.seq.benchmarks;
+
+import io.github.qudtlib.maven.seq.ConfigurationConverter;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the configuration work the seq plugin does for every step: converting the overlay
+ * configuration, merging it with the plugin execution configuration and with the mojo defaults, and
+ * all of that together as in step preparation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigurationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int width;
+
+    @Param({"1", "4", "16"})
+    public int depth;
+
+    private PlexusConfiguration userConfiguration;
+    private Xpp3Dom executionConfiguration;
+    private MojoDescriptor mojoDescriptor;
+    private Xpp3Dom userConfig;
+    private Xpp3Dom defaultConfig;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        userConfiguration = SyntheticConfigurations.userConfiguration(width, depth);
+        executionConfiguration = SyntheticConfigurations.executionConfiguration(width, depth);
+        PluginDescriptor pluginDescriptor = new PluginDescriptor();
+        pluginDescriptor.setGroupId("io.github.qudtlib");
+        pluginDescriptor.setArtifactId("benchmark-maven-plugin");
+        pluginDescriptor.setVersion("1.0");
+        mojoDescriptor = new MojoDescriptor();
+        mojoDescriptor.setGoal("generate");
+        mojoDescriptor.setPluginDescriptor(pluginDescriptor);
+        mojoDescriptor.setMojoConfiguration(SyntheticConfigurations.mojoConfiguration());
+        // merging leaves its inputs unchanged, so they can be shared by all invocations
+        userConfig = ConfigurationConverter.toXpp3Dom(userConfiguration);
+        defaultConfig = ConfigurationConverter.toXpp3Dom(mojoDescriptor.getMojoConfiguration());
+    }
+
+    @Benchmark
+    public Xpp3Dom convert() {
+        return ConfigurationConverter.toXpp3Dom(userConfiguration);
+    }
+
+    @Benchmark
+    public Xpp3Dom mergeWithDefaults() {
+        return ConfigurationConverter.mergeWithDefaults(userConfig, defaultConfig);
+    }
+
+    @Benchmark
+    public Xpp3Dom mergeWithExecutionConfiguration() {
+        return ConfigurationConverter.mergeWithExecutionConfiguration(
+                userConfig, executionConfiguration);
+    }
+
+    /**
+     * Everything SeqMojo does with the configuration to prepare one step. The default configuration
+     * is converted once per mojo and cached, so it is not converted here.
+     */
+    @Benchmark
+    public MojoExecution prepareStep() {
+        Xpp3Dom userConfig = ConfigurationConverter.toXpp3Dom(userConfiguration);
+        userConfig =
+                ConfigurationConverter.mergeWithExecutionConfiguration(
+                        userConfig, executionConfiguration);
+        Xpp3Dom mergedConfig = ConfigurationConverter.mergeWithDefaults(userConfig, defaultConfig);
+        MojoExecution mojoExecution = new MojoExecution(mojoDescriptor, "benchmark");
+        mojoExecution.setConfiguration(mergedConfig);
+        return mojoExecution;
+    }
+}
@@ -0,0 +1,232 @@
+package io.github.qudtlib.maven.seq.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Measures the overhead the seq plugin adds per step, end to end: generates projects with sequences
+ * of trivial steps (see {@link SyntheticSequences}), builds each one several times with the
+ * installed Maven against the local repository only, and compares the per-step overhead and the
+ * peak heap usage with a committed budget. Exits with status 1 if a budget is exceeded.
+ *
+ * <p>The time of a sequence is the duration of its Flight Recorder event, which covers planning,
+ * coordinate resolution and configuration merging as well as the steps, but not Maven startup. The
+ * overhead per step is the growth of that time minus the time spent in the goals themselves,
+ * relative to a sequence of one step, divided by the number of added steps. Goal times and the peak
+ * heap usage are taken from the plugin's performance report.
+ *
+ * <p>Usage: <code>OverheadBenchmark &lt;budget.properties&gt; [results.json]</code>, with the
+ * system properties <code>sizes</code> (default 10,100,1000), <code>repetitions</code> (3), <code>
+ * width</code> and <code>depth</code> of the overlay configurations (50 and 4), <code>mvn</code>,
+ * <code>mavenOpts</code> (-Xmx1g), <code>localRepository</code> and <code>workDirectory</code>
+ * (target/overhead).
+ */
+public final class OverheadBenchmark {
+
+    private static final String SEQUENCE_EVENT = "io.github.qudtlib.seq.Sequence";
+
+    private OverheadBenchmark() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: OverheadBenchmark <budget.properties> [results.json]");
+            System.exit(2);
+        }
+        Properties budget = new Properties();
+        try (Reader reader = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)) {
+            budget.load(reader);
+        }
+        int repetitions = Integer.getInteger("repetitions", 3);
+        int width = Integer.getInteger("width", 50);
+        int depth = Integer.getInteger("depth", 4);
+        Path workDirectory = Path.of(System.getProperty("workDirectory", "target/overhead"));
+        String seqVersion = System.getProperty("seq.version", readSeqVersion());
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : System.getProperty("sizes", "10,100,1000").split(",")) {
+            sizes.add(Integer.parseInt(size.trim()));
+        }
+
+        Measurement baseline = measure(workDirectory, 1, width, depth, seqVersion, repetitions);
+        long fixedNanos = baseline.sequenceNanos - baseline.stepWallNanos;
+        System.out.printf(
+                Locale.ROOT,
+                "Sequence of 1 step: %.2fs build, %.1fms in the plugin%n",
+                baseline.buildNanos / 1e9,
+                fixedNanos / 1e6);
+        System.out.printf(
+                "%-11s %6s %10s %10s %10s %15s %10s%n",
+                "", "steps", "build", "sequence", "goals", "overhead/step", "heap peak");
+        int exceeded = 0;
+        StringBuilder json = new StringBuilder("[");
+        for (int steps : sizes) {
+            Measurement m = measure(workDirectory, steps, width, depth, seqVersion, repetitions);
+            double overheadMicros =
+                    steps > 1
+                            ? Math.max(0, m.sequenceNanos - m.stepWallNanos - fixedNanos)
+                                    / (steps - 1)
+                                    / 1000.0
+                            : 0;
+            double heapPeakMb = m.heapPeakBytes / (1024.0 * 1024.0);
+            boolean over =
+                    exceeds(budget, "overheadMicrosPerStep." + steps, overheadMicros)
+                            | exceeds(budget, "heapPeakMb." + steps, heapPeakMb);
+            if (over) {
+                exceeded++;
+            }
+            System.out.printf(
+                    Locale.ROOT,
+                    "%-11s %6d %9.2fs %9.2fs %9.2fs %13.1fus %8.1fMB%n",
+                    over ? "OVER BUDGET" : "OK",
+                    steps,
+                    m.buildNanos / 1e9,
+                    m.sequenceNanos / 1e9,
+                    m.stepWallNanos / 1e9,
+                    overheadMicros,
+                    heapPeakMb);
+            json.append(json.length() > 1 ? ",\n" : "\n");
+            json.append(
+                    String.format(
+                            Locale.ROOT,
+                            "  {\"steps\": %d, \"width\": %d, \"depth\": %d, \"buildNanos\": %d,"
+                                    + " \"sequenceNanos\": %d, \"stepWallNanos\": %d,"
+                                    + " \"overheadMicrosPerStep\": %.1f, \"heapPeakBytes\": %d}",
+                            steps,
+                            width,
+                            depth,
+                            m.buildNanos,
+                            m.sequenceNanos,
+                            m.stepWallNanos,
+                            overheadMicros,
+                            m.heapPeakBytes));
+        }
+        json.append("\n]\n");
+        if (args.length > 1) {
+            Path results = Path.of(args[1]);
+            if (results.getParent() != null) {
+                Files.createDirectories(results.getParent());
+            }
+            Files.writeString(results, json.toString(), StandardCharsets.UTF_8);
+        }
+        if (exceeded > 0) {
+            System.out.printf("%d sequence size(s) exceeded their overhead budget%n", exceeded);
+            System.exit(1);
+        }
+    }
+
+    private static boolean exceeds(Properties budget, String key, double value) {
+        String limit = budget.getProperty(key);
+        return limit != null && value > Double.parseDouble(limit.trim());
+    }
+
+    /** The results of one build of a generated project. */
+    private static final class Measurement {
+        long buildNanos;
+        long sequenceNanos;
+        long stepWallNanos;
+        long heapPeakBytes;
+    }
+
+    /**
+     * Builds the generated project once to warm up file system caches and then <code>repetitions
+     * </code> times, and returns the build whose sequence took the median time.
+     */
+    private static Measurement measure(
+            Path workDirectory, int steps, int width, int depth, String seqVersion, int repetitions)
+            throws IOException, InterruptedException {
+        Path project = workDirectory.resolve("steps-" + steps).toAbsolutePath();
+        Files.createDirectories(project);
+        Files.writeString(
+                project.resolve("pom.xml"),
+                SyntheticSequences.pom(steps, width, depth, seqVersion),
+                StandardCharsets.UTF_8);
+        build(project);
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < repetitions; i++) {
+            measurements.add(build(project));
+        }
+        measurements.sort(Comparator.comparingLong(m -> m.sequenceNanos));
+        return measurements.get(measurements.size() / 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Measurement build(Path project) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        boolean windows = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
+        command.add(System.getProperty("mvn", windows ? "mvn.cmd" : "mvn"));
+        command.addAll(
+                List.of(
+                        "-B",
+                        "-o",
+                        "-q",
+                        "seq:run@" + SyntheticSequences.EXECUTION_ID,
+                        "-Dseq.report",
+                        "-Dseq.history=false",
+                        "-Dseq.planCache=false"));
+        String localRepository = System.getProperty("localRepository");
+        if (localRepository != null) {
+            command.add("-Dmaven.repo.local=" + localRepository);
+        }
+        Path recording = project.resolve("sequence.jfr");
+        Files.deleteIfExists(recording);
+        ProcessBuilder builder = new ProcessBuilder(command).directory(project.toFile());
+        builder.environment()
+                .put(
+                        "MAVEN_OPTS",
+                        System.getProperty("mavenOpts", "-Xmx1g")
+                                + " -XX:StartFlightRecording=filename="
+                                + recording);
+        builder.redirectErrorStream(true);
+        Path log = project.resolve("build.log");
+        builder.redirectOutput(log.toFile());
+        long start = System.nanoTime();
+        int exitCode = builder.start().waitFor();
+        Measurement m = new Measurement();
+        m.buildNanos = System.nanoTime() - start;
+        if (exitCode != 0) {
+            System.err.println(Files.readString(log, StandardCharsets.UTF_8));
+            throw new IOException("Build of " + project + " failed with exit code " + exitCode);
+        }
+        for (RecordedEvent event : RecordingFile.readAllEvents(recording)) {
+            if (event.getEventType().getName().equals(SEQUENCE_EVENT)) {
+                m.sequenceNanos = event.getDuration().toNanos();
+            }
+        }
+        if (m.sequenceNanos == 0) {
+            throw new IOException("No " + SEQUENCE_EVENT + " event in " + recording);
+        }
+        Path report =
+                project.resolve(
+                        Path.of("target", "seq-report", SyntheticSequences.EXECUTION_ID + ".json"));
+        Map<String, Object> parsed =
+                (Map<String, Object>)
+                        new CompareToBaseline.JsonParser(
+                                        Files.readString(report, StandardCharsets.UTF_8))
+                                .parse();
+        Map<String, Object> totals = (Map<String, Object>) parsed.get("totals");
+        m.stepWallNanos = ((Double) totals.get("stepWallNanos")).longValue();
+        m.heapPeakBytes = ((Double) totals.get("heapPeakBytes")).longValue();
+        return m;
+    }
+
+    /** Returns the version of the seq plugin this benchmark was built against. */
+    private static String readSeqVersion() throws IOException {
+        try (InputStream in =
+                OverheadBenchmark.class.getResourceAsStream(
+                        "/META-INF/maven/io.github.qudtlib/seq-maven-plugin/pom.properties")) {
+            if (in == null) {
+                throw new IOException(
+                        "Cannot determine the seq-maven-plugin version; set -Dseq.version");
+            }
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties.getProperty("version");
+        }
+    }
+}
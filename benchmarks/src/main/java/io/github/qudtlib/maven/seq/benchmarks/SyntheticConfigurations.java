@@ -0,0 +1,74 @@
+package io.github.qudtlib.maven.seq.benchmarks;
+
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Generates configuration trees shaped like the ones the seq plugin sees: a few scalar parameters
+ * plus a list of <code>width</code> items, each nested <code>depth</code> levels deep, similar to
+ * large lists of SHACL/OWL transformations.
+ */
+final class SyntheticConfigurations {
+
+    static final int SCALAR_PARAMETERS = 10;
+
+    private SyntheticConfigurations() {}
+
+    /** The overlay configuration of a step, as Maven hands it to the mojo. */
+    static PlexusConfiguration userConfiguration(int width, int depth) {
+        return new XmlPlexusConfiguration(tree("configuration", "user", 0, width, depth));
+    }
+
+    /**
+     * The configuration of a plugin execution referenced with <code>@executionId</code>. Half of
+     * its scalar parameters overlap with the user configuration.
+     */
+    static Xpp3Dom executionConfiguration(int width, int depth) {
+        return tree(
+                "configuration", "execution", SCALAR_PARAMETERS / 2, Math.max(1, width / 2), depth);
+    }
+
+    /**
+     * The default configuration of a mojo: one element per parameter with an expression value and
+     * the implementation and default-value attributes.
+     */
+    static PlexusConfiguration mojoConfiguration() {
+        Xpp3Dom root = new Xpp3Dom("configuration");
+        for (int i = 0; i < SCALAR_PARAMETERS * 2; i++) {
+            Xpp3Dom param = new Xpp3Dom("param" + i);
+            param.setValue("${seq.param" + i + "}");
+            param.setAttribute("implementation", "java.lang.String");
+            param.setAttribute("default-value", "default" + i);
+            root.addChild(param);
+        }
+        Xpp3Dom items = new Xpp3Dom("items");
+        items.setAttribute("implementation", "java.util.List");
+        root.addChild(items);
+        return new XmlPlexusConfiguration(root);
+    }
+
+    private static Xpp3Dom tree(String name, String prefix, int firstParam, int width, int depth) {
+        Xpp3Dom root = new Xpp3Dom(name);
+        for (int i = firstParam; i < firstParam + SCALAR_PARAMETERS; i++) {
+            Xpp3Dom param = new Xpp3Dom("param" + i);
+            param.setValue(prefix + "-value-" + i);
+            root.addChild(param);
+        }
+        Xpp3Dom items = new Xpp3Dom("items");
+        root.addChild(items);
+        for (int i = 0; i < width; i++) {
+            Xpp3Dom item = new Xpp3Dom("item");
+            item.setAttribute("id", prefix + "-" + i);
+            items.addChild(item);
+            Xpp3Dom current = item;
+            for (int d = 1; d < depth; d++) {
+                Xpp3Dom level = new Xpp3Dom("level" + d);
+                current.addChild(level);
+                current = level;
+            }
+            current.setValue("src/main/rdf/" + prefix + "/file-" + i + ".ttl");
+        }
+        return root;
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.qudtlib.maven.seq.benchmarks;
+
+/**
+ * Generates POMs with a sequence of trivial steps for {@link OverheadBenchmark}. Every step runs
+ * maven-antrun-plugin with <code>skip</code> set, so the goal itself does almost nothing, and has
+ * an overlay configuration whose Ant target holds <code>width</code> tasks, each nested <code>depth
+ * </code> levels deep. The steps take turns using shorthand coordinates, full coordinates and an
+ * <code>@executionId</code> reference to a configured execution.
+ */
+final class SyntheticSequences {
+
+    static final String ANTRUN_VERSION = "3.1.0";
+    static final String EXECUTION_ID = "seq";
+
+    private SyntheticSequences() {}
+
+    static String pom(int steps, int width, int depth, String seqVersion) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        sb.append("  <modelVersion>4.0.0</modelVersion>\n");
+        sb.append("  <groupId>io.github.qudtlib.benchmarks</groupId>\n");
+        sb.append("  <artifactId>overhead-").append(steps).append("</artifactId>\n");
+        sb.append("  <version>1.0</version>\n");
+        sb.append("  <packaging>pom</packaging>\n");
+        sb.append("  <build>\n    <plugins>\n");
+        sb.append("      <plugin>\n");
+        sb.append("        <groupId>org.apache.maven.plugins</groupId>\n");
+        sb.append("        <artifactId>maven-antrun-plugin</artifactId>\n");
+        sb.append("        <version>").append(ANTRUN_VERSION).append("</version>\n");
+        sb.append("        <executions>\n          <execution>\n");
+        sb.append("            <id>base</id>\n");
+        sb.append("            <configuration>\n");
+        sb.append("              <skip>true</skip>\n");
+        appendTarget(sb, "base", width / 2, depth, "              ");
+        sb.append("            </configuration>\n");
+        sb.append("          </execution>\n        </executions>\n");
+        sb.append("      </plugin>\n");
+        sb.append("      <plugin>\n");
+        sb.append("        <groupId>io.github.qudtlib</groupId>\n");
+        sb.append("        <artifactId>seq-maven-plugin</artifactId>\n");
+        sb.append("        <version>").append(seqVersion).append("</version>\n");
+        sb.append("        <executions>\n          <execution>\n");
+        sb.append("            <id>").append(EXECUTION_ID).append("</id>\n");
+        sb.append("            <configuration>\n              <steps>\n");
+        for (int i = 0; i < steps; i++) {
+            sb.append("                <step>\n");
+            sb.append("                  <id>step-").append(i + 1).append("</id>\n");
+            sb.append("                  <pluginCoordinates>");
+            switch (i % 3) {
+                case 0:
+                    sb.append("antrun:run");
+                    break;
+                case 1:
+                    sb.append("org.apache.maven.plugins:maven-antrun-plugin:run");
+                    break;
+                default:
+                    sb.append("antrun:run@base");
+            }
+            sb.append("</pluginCoordinates>\n");
+            sb.append("                  <configuration>\n");
+            sb.append("                    <skip>true</skip>\n");
+            appendTarget(sb, "step-" + (i + 1), width, depth, "                    ");
+            sb.append("                  </configuration>\n");
+            sb.append("                </step>\n");
+        }
+        sb.append("              </steps>\n            </configuration>\n");
+        sb.append("          </execution>\n        </executions>\n");
+        sb.append("      </plugin>\n");
+        sb.append("    </plugins>\n  </build>\n</project>\n");
+        return sb.toString();
+    }
+
+    private static void appendTarget(
+            StringBuilder sb, String prefix, int width, int depth, String indent) {
+        sb.append(indent).append("<target>\n");
+        for (int i = 0; i < width; i++) {
+            for (int d = 1; d < depth; d++) {
+                sb.append(indent).append("  ".repeat(d)).append("<sequential>\n");
+            }
+            sb.append(indent)
+                    .append("  ".repeat(depth))
+                    .append("<echo message=\"")
+                    .append(prefix)
+                    .append(" task ")
+                    .append(i)
+                    .append("\"/>\n");
+            for (int d = depth - 1; d >= 1; d--) {
+                sb.append(indent).append("  ".repeat(d)).append("</sequential>\n");
+            }
+        }
+        sb.append(indent).append("</target>\n");
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.qudtlib.maven.seq;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Runs a sequence step by step across all projects of the reactor instead of running the whole
+ * sequence in each project: the first step is executed in every project, up to <code>threads
+ * </code> projects at a time, then the second step, and so on. Each step is resolved once for all
+ * projects. Steps run in declaration order; <code>dependsOn</code> and <code>parallelGroup</code>
+ * have no effect, and matrix and forked steps are not supported. Typically invoked once for the
+ * execution configured in the root POM, e.g. <code>mvn seq:run-aggregate@my-sequence</code>.
+ */
+@Mojo(
+        name = "run-aggregate",
+        defaultPhase = LifecyclePhase.NONE,
+        aggregator = true,
+        threadSafe = true)
+public class AggregateMojo extends SeqMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        runAggregate();
+    }
+}
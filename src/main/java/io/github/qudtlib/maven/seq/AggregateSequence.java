@@ -0,0 +1,480 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Runs a sequence step-major across all projects of the reactor for <code>seq:run-aggregate
+ * </code>: each step is executed in every project, up to <code>threads</code> projects at a time,
+ * before the next step starts. A step is resolved once, and its descriptors, plugin realm and
+ * merged configuration are shared by all projects. Conditions and up-to-date checks are evaluated
+ * per project; the status of a step in a project is kept under the project's key.
+ */
+class AggregateSequence {
+
+    private final SeqMojo mojo;
+    private final Log log;
+    private final List<MavenProject> modules;
+    private final Map<String, String> stepStatuses;
+
+    AggregateSequence(SeqMojo mojo) {
+        this.mojo = mojo;
+        this.log = mojo.getLog();
+        this.modules = mojo.getSession().getProjects();
+        this.stepStatuses = mojo.getStepStatuses();
+    }
+
+    void run() throws MojoExecutionException {
+        Set<SeqMojo.SequenceStep> explicitVersions = new HashSet<>();
+        for (SeqMojo.SequenceStep sequenceStep : mojo.getSteps()) {
+            if (SeqMojo.isPresent(sequenceStep.getVersion())) {
+                explicitVersions.add(sequenceStep);
+            }
+        }
+        // steps run one after the other across the reactor, and conditions are evaluated in each
+        // project, whose properties may differ
+        List<PreparedStep> preparedSteps = mojo.planSteps(mojo.getStepIds(), null, true);
+        for (PreparedStep preparedStep : preparedSteps) {
+            if (preparedStep.getSkipReason() != null) {
+                continue;
+            }
+            SeqMojo.SequenceStep sequenceStep = preparedStep.getStep();
+            if (preparedStep.isMatrix() || sequenceStep.isFork()) {
+                throw new MojoExecutionException(
+                        "Step "
+                                + preparedStep.getExecutionId()
+                                + ": matrix and forked steps cannot be aggregated across the reactor");
+            }
+            String key = sequenceStep.getGroupId() + ":" + sequenceStep.getArtifactId();
+            Plugin rootPlugin = getBuildPlugin(mojo.getProject(), key);
+            for (MavenProject module : modules) {
+                String mismatch =
+                        getPluginMismatch(
+                                rootPlugin,
+                                getBuildPlugin(module, key),
+                                explicitVersions.contains(sequenceStep),
+                                sequenceStep.getExecutionId());
+                if (mismatch != null) {
+                    throw new MojoExecutionException(
+                            String.format(
+                                    "Step %s: project %s declares plugin %s with %s than the root"
+                                            + " project, but seq:run-aggregate resolves each step"
+                                            + " once from the root project; align the plugin in"
+                                            + " both POMs or run the sequence in each project with"
+                                            + " seq:run",
+                                    preparedStep.getExecutionId(),
+                                    module.getArtifactId(),
+                                    key,
+                                    mismatch));
+                }
+            }
+        }
+        mojo.openSequence(false);
+        int moduleThreads =
+                Math.max(
+                        1,
+                        Math.min(
+                                modules.size(),
+                                mojo.getThreads() > 0
+                                        ? mojo.getThreads()
+                                        : Runtime.getRuntime().availableProcessors()));
+        AtomicInteger moduleThreadCount = new AtomicInteger();
+        ExecutorService pool =
+                Executors.newFixedThreadPool(
+                        moduleThreads,
+                        r -> {
+                            Thread t =
+                                    new Thread(
+                                            r,
+                                            "seq-aggregate-" + moduleThreadCount.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+        PerformanceReport performanceReport = mojo.newPerformanceReport();
+        long sequenceStart = mojo.beginRound();
+        try {
+            for (PreparedStep preparedStep : preparedSteps) {
+                if (preparedStep.getSkipReason() != null) {
+                    mojo.skipStep(preparedStep, performanceReport);
+                } else {
+                    executeStep(preparedStep, pool, performanceReport);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            mojo.endRound(performanceReport, sequenceStart);
+            mojo.closeSequence(preparedSteps);
+        }
+    }
+
+    /**
+     * Executes one step in all modules and waits for all of them. After a failure, modules that
+     * have not started the step are not run, and the step fails once the running ones are done.
+     */
+    private void executeStep(
+            PreparedStep preparedStep, ExecutorService pool, PerformanceReport performanceReport)
+            throws MojoExecutionException {
+        String stepId = preparedStep.getExecutionId();
+        String formattedLabel = mojo.formatLabel();
+        log.info(
+                String.format(
+                        "---- %s: %sstep %d (%s) %s starting in %d projects",
+                        mojo.getMojoGoal(),
+                        formattedLabel,
+                        preparedStep.getIndex(),
+                        stepId,
+                        mojo.formatCoordinates(preparedStep.getStep(), null),
+                        modules.size()));
+        long start = System.nanoTime();
+        // the plugin is only loaded if the step runs in at least one project
+        Map<MavenProject, String> skipReasons =
+                preparedStep.getCondition() != null
+                        ? evaluateCondition(
+                                preparedStep.getCondition(),
+                                modules,
+                                mojo::getProperty,
+                                stepStatuses)
+                        : Map.of();
+        boolean threadSafe = true;
+        if (skipReasons.size() < modules.size()) {
+            mojo.prepareStep(preparedStep, true);
+            threadSafe = preparedStep.getMojoDescriptor().isThreadSafe();
+        }
+        if (!threadSafe && modules.size() > 1) {
+            log.warn(
+                    String.format(
+                            "%s is not marked thread-safe; running step %s in one project at a time",
+                            preparedStep.getMojoDescriptor().getFullGoalName(), stepId));
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        Map<MavenProject, Future<String>> outcomes = new LinkedHashMap<>();
+        for (MavenProject module : modules) {
+            Callable<String> task =
+                    () -> {
+                        if (failed.get()) {
+                            return "NOT_RUN";
+                        }
+                        try {
+                            return executeInModule(
+                                    preparedStep,
+                                    module,
+                                    skipReasons.get(module),
+                                    performanceReport);
+                        } catch (Exception e) {
+                            failed.set(true);
+                            throw e;
+                        }
+                    };
+            outcomes.put(module, pool.submit(task));
+            if (!threadSafe) {
+                awaitQuietly(outcomes.get(module));
+            }
+        }
+        Map<String, Integer> counts = new TreeMap<>();
+        List<String> failures = new ArrayList<>();
+        Throwable firstFailure = null;
+        for (Map.Entry<MavenProject, Future<String>> outcome : outcomes.entrySet()) {
+            try {
+                counts.merge(outcome.getValue().get(), 1, Integer::sum);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while executing step " + stepId);
+            } catch (ExecutionException e) {
+                counts.merge("FAILED", 1, Integer::sum);
+                failures.add(outcome.getKey().getArtifactId());
+                if (firstFailure == null) {
+                    firstFailure = e.getCause();
+                }
+            }
+        }
+        mojo.releaseStep(preparedStep);
+        String summary =
+                counts.entrySet().stream()
+                        .map(
+                                count ->
+                                        count.getValue()
+                                                + " "
+                                                + count.getKey()
+                                                        .toLowerCase(Locale.ROOT)
+                                                        .replace('_', ' '))
+                        .collect(Collectors.joining(", "));
+        log.info(
+                String.format(
+                        "---- %s: %sstep %d (%s) completed in %s: %s",
+                        mojo.getMojoGoal(),
+                        formattedLabel,
+                        preparedStep.getIndex(),
+                        stepId,
+                        SeqMojo.formatDuration((System.nanoTime() - start) / 1_000_000),
+                        summary));
+        if (!failures.isEmpty()) {
+            throw new MojoExecutionException(
+                    String.format(
+                            "Step %s failed in %d of %d projects: %s",
+                            stepId, failures.size(), modules.size(), String.join(", ", failures)),
+                    firstFailure);
+        }
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // reported with the other outcomes
+        }
+    }
+
+    /**
+     * Evaluates the condition of a step in each module, with the properties of the module and the
+     * statuses of the earlier steps in it. Returns the reasons to skip the step, by module.
+     */
+    static Map<MavenProject, String> evaluateCondition(
+            StepCondition condition,
+            List<MavenProject> modules,
+            BiFunction<MavenProject, String, String> properties,
+            Map<String, String> stepStatuses)
+            throws MojoExecutionException {
+        Map<MavenProject, String> skipReasons = new HashMap<>();
+        for (MavenProject module : modules) {
+            String skipReason =
+                    condition.evaluate(
+                            module.getBasedir().toPath(),
+                            name -> properties.apply(module, name),
+                            getModuleStatuses(stepStatuses, getModuleKey(module)));
+            if (skipReason != null) {
+                skipReasons.put(module, skipReason);
+            }
+        }
+        return skipReasons;
+    }
+
+    /**
+     * Compares the declaration of a plugin in a module with the one in the root project, from which
+     * the step was resolved: its version, unless the step sets one, its dependencies and, if the
+     * step names an execution, the configuration of that execution. Returns the difference, or null
+     * if the module can share the resolved step.
+     */
+    static String getPluginMismatch(
+            Plugin rootPlugin, Plugin modulePlugin, boolean explicitVersion, String executionId) {
+        if (rootPlugin == modulePlugin) {
+            return null;
+        }
+        if (!explicitVersion && !Objects.equals(getVersion(rootPlugin), getVersion(modulePlugin))) {
+            return "another version (" + getVersion(modulePlugin) + ")";
+        }
+        if (!getDependencies(rootPlugin).equals(getDependencies(modulePlugin))) {
+            return "other dependencies";
+        }
+        if (SeqMojo.isPresent(executionId)
+                && !Objects.equals(
+                        getExecutionConfiguration(rootPlugin, executionId),
+                        getExecutionConfiguration(modulePlugin, executionId))) {
+            return "another configuration of execution " + executionId;
+        }
+        return null;
+    }
+
+    private static Plugin getBuildPlugin(MavenProject module, String key) {
+        return module.getBuild().getPluginsAsMap().get(key);
+    }
+
+    private static String getVersion(Plugin plugin) {
+        return plugin != null ? plugin.getVersion() : null;
+    }
+
+    private static List<String> getDependencies(Plugin plugin) {
+        List<String> dependencies = new ArrayList<>();
+        if (plugin != null) {
+            for (Dependency dependency : plugin.getDependencies()) {
+                dependencies.add(dependency.getManagementKey() + ":" + dependency.getVersion());
+            }
+        }
+        return dependencies;
+    }
+
+    private static Object getExecutionConfiguration(Plugin plugin, String executionId) {
+        PluginExecution execution =
+                plugin != null ? plugin.getExecutionsAsMap().get(executionId) : null;
+        return execution != null ? execution.getConfiguration() : null;
+    }
+
+    /** Prefix of the keys of the step statuses of a module. */
+    private static String getModuleKey(MavenProject module) {
+        return module.getGroupId() + ":" + module.getArtifactId() + "|";
+    }
+
+    /**
+     * Looks up the status of a step in one module. Steps skipped for the whole reactor while
+     * planning have a single status, stored under their id alone.
+     */
+    static Function<String, String> getModuleStatuses(
+            Map<String, String> stepStatuses, String moduleKey) {
+        return id -> {
+            String status = stepStatuses.get(moduleKey + id);
+            return status != null ? status : stepStatuses.get(id);
+        };
+    }
+
+    /**
+     * Executes the step in one module, with the module as the current project, unless its condition
+     * was not met there. Returns the status of the step in the module.
+     */
+    private String executeInModule(
+            PreparedStep preparedStep,
+            MavenProject module,
+            String skipReason,
+            PerformanceReport performanceReport)
+            throws Exception {
+        SeqMojo.SequenceStep sequenceStep = preparedStep.getStep();
+        String stepId = preparedStep.getExecutionId();
+        String moduleStepId = stepId + "@" + module.getArtifactId();
+        String moduleKey = getModuleKey(module);
+        Path basedir = module.getBasedir().toPath();
+        if (skipReason != null) {
+            log.debug("Skipping step " + moduleStepId + ": " + skipReason);
+            SequenceEvents.stepSkipped(
+                    preparedStep.getIndex(),
+                    moduleStepId,
+                    mojo.getSkippedCoordinates(sequenceStep),
+                    skipReason);
+            stepStatuses.put(moduleKey + stepId, "SKIPPED");
+            return "SKIPPED";
+        }
+        StepMetrics metrics =
+                new StepMetrics(
+                        preparedStep.getIndex(),
+                        moduleStepId,
+                        preparedStep.getPluginDescriptor().getId() + ":" + sequenceStep.getGoal());
+        metrics.setResolutionNanos(preparedStep.getResolutionNanos());
+        performanceReport.add(metrics);
+        SequenceEvents.StepExecutionEvent stepEvent = new SequenceEvents.StepExecutionEvent();
+        stepEvent.begin();
+        UpToDateCheck upToDateCheck = mojo.newUpToDateCheck(preparedStep, module);
+        if (mojo.isUpToDate(upToDateCheck, preparedStep, moduleStepId)) {
+            metrics.setStatus("UP_TO_DATE");
+            stepStatuses.put(moduleKey + stepId, metrics.getStatus());
+            stepEvent.report(
+                    module.getId(),
+                    preparedStep.getIndex(),
+                    moduleStepId,
+                    metrics.getCoordinates(),
+                    metrics.getStatus());
+            return metrics.getStatus();
+        }
+        String cacheKey = mojo.getOutputCacheKey(sequenceStep, upToDateCheck);
+        MojoExecution mojoExecution = new MojoExecution(preparedStep.getMojoDescriptor(), stepId);
+        Xpp3Dom mergedConfig = preparedStep.getMergedConfiguration();
+        if (mergedConfig != null && mergedConfig.getChildCount() > 0) {
+            mojoExecution.setConfiguration(mergedConfig);
+        }
+        ResourceLocks locks = preparedStep.getLocks();
+        ResourceLocks.Held heldLocks = null;
+        LogCapture.StepLog stepLog = mojo.isCaptureLogs() ? mojo.openStepLog(module, stepId) : null;
+        if (stepLog != null) {
+            LogCapture.begin(stepLog);
+        }
+        boolean succeeded = false;
+        StepWatchdog.StepTimeoutException timedOut = null;
+        metrics.setStatus("FAILED");
+        try {
+            SeqMojo.StepLimit stepLimit =
+                    mojo.getStepLimit(preparedStep.getTimeoutNanos(), moduleStepId);
+            if (!locks.isEmpty()) {
+                heldLocks =
+                        locks.acquire(
+                                log,
+                                moduleStepId,
+                                stepLimit.getRemainingNanos(),
+                                stepLimit.getDescription());
+                metrics.setWaitNanos(heldLocks.getWaitNanos());
+            }
+            if (cacheKey != null
+                    && !mojo.isForce()
+                    && mojo.restoreOutputs(cacheKey, basedir, moduleStepId, metrics)) {
+                metrics.setStatus("FROM_CACHE");
+            } else {
+                mojo.getWatchdog()
+                        .run(
+                                moduleStepId,
+                                stepLimit.getRemainingNanos(),
+                                stepLimit.getDescription(),
+                                preparedStep.getWarnAfterNanos(),
+                                () -> {
+                                    MavenSession moduleSession = mojo.getSession().clone();
+                                    moduleSession.setCurrentProject(module);
+                                    metrics.begin();
+                                    try {
+                                        mojo.getPluginManager()
+                                                .executeMojo(moduleSession, mojoExecution);
+                                    } finally {
+                                        metrics.end();
+                                    }
+                                    return null;
+                                });
+                metrics.setStatus("EXECUTED");
+            }
+            succeeded = true;
+        } catch (Exception e) {
+            if (e instanceof StepWatchdog.StepTimeoutException) {
+                metrics.setStatus("TIMED_OUT");
+                timedOut = (StepWatchdog.StepTimeoutException) e;
+            }
+            log.error("Step " + moduleStepId + " failed: " + e.getMessage());
+            throw e;
+        } finally {
+            mojo.releaseLocks(heldLocks, null, timedOut, moduleStepId);
+            if (stepLog != null) {
+                LogCapture.end();
+                mojo.closeStepLog(stepLog, succeeded, preparedStep.getIndex(), moduleStepId);
+            }
+            stepStatuses.put(moduleKey + stepId, metrics.getStatus());
+            stepEvent.report(
+                    module.getId(),
+                    preparedStep.getIndex(),
+                    moduleStepId,
+                    metrics.getCoordinates(),
+                    metrics.getStatus());
+        }
+        if (upToDateCheck != null) {
+            try {
+                upToDateCheck.recordSuccess();
+            } catch (IOException e) {
+                log.warn(
+                        "Could not record the state of step "
+                                + moduleStepId
+                                + ": "
+                                + e.getMessage());
+            }
+        }
+        if (cacheKey != null && metrics.getStatus().equals("EXECUTED")) {
+            mojo.storeOutputs(cacheKey, basedir, sequenceStep, moduleStepId);
+        }
+        log.debug(
+                String.format(
+                        "Step %s completed in %s",
+                        moduleStepId, SeqMojo.formatDuration(metrics.getWallNanos() / 1_000_000)));
+        return metrics.getStatus();
+    }
+}
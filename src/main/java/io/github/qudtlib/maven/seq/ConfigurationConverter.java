@@ -1,14 +1,84 @@
 package io.github.qudtlib.maven.seq;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.util.xml.CompactXMLWriter;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.codehaus.plexus.util.xml.Xpp3DomWriter;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 
+/**
+ * Converts and merges step configurations.
+ *
+ * <p>The merge methods never modify their arguments and return trees of their own, built through
+ * the public {@link Xpp3Dom} API, so a result can be modified without affecting the configurations
+ * it was merged from.
+ */
 public class ConfigurationConverter {
+
+    /** Returned by {@link #merge} when the trees use merge directives of plexus-utils. */
+    private static final Xpp3Dom UNSUPPORTED = new Xpp3Dom("unsupported");
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("@\\{([^}]+)\\}");
+
+    /**
+     * Converts the configuration without recursion, so arbitrarily deep configurations cannot
+     * overflow the stack. Only elements with children are put on the work stack.
+     */
     public static Xpp3Dom toXpp3Dom(PlexusConfiguration configuration) {
         if (configuration == null) {
             return null;
         }
-        Xpp3Dom dom = new Xpp3Dom(configuration.getName());
+        Xpp3Dom root = new Xpp3Dom(configuration.getName());
+        copyValueAndAttributes(configuration, root);
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(configuration);
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Xpp3Dom dom = (Xpp3Dom) stack.pop();
+            PlexusConfiguration current = (PlexusConfiguration) stack.pop();
+            int childCount = current.getChildCount();
+            for (int i = 0; i < childCount; i++) {
+                PlexusConfiguration child = current.getChild(i);
+                Xpp3Dom childDom = new Xpp3Dom(child.getName());
+                copyValueAndAttributes(child, childDom);
+                dom.addChild(childDom);
+                if (child.getChildCount() > 0) {
+                    stack.push(child);
+                    stack.push(childDom);
+                }
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Writes the configuration without indentation or line breaks, which {@link #parse} reads back
+     * into an equal tree. Unlike {@link Xpp3Dom#toString()}, no whitespace is added around values.
+     */
+    static String serialize(Xpp3Dom configuration) {
+        StringWriter writer = new StringWriter();
+        Xpp3DomWriter.write(new CompactXMLWriter(writer), configuration);
+        return writer.toString();
+    }
+
+    /** Reads a configuration written by {@link #serialize}, trimming values as Maven does. */
+    static Xpp3Dom parse(String configuration) throws XmlPullParserException, IOException {
+        return Xpp3DomBuilder.build(new StringReader(configuration), true);
+    }
+
+    private static void copyValueAndAttributes(PlexusConfiguration configuration, Xpp3Dom dom) {
         String value = configuration.getValue(null);
         if (value != null) {
             dom.setValue(value);
@@ -22,12 +92,189 @@ public class ConfigurationConverter {
                 }
             }
         }
-        int childCount = configuration.getChildCount();
+    }
+
+    /**
+     * Merges the user configuration of a step (dominant) with the default configuration of its mojo
+     * (recessive).
+     */
+    public static Xpp3Dom mergeWithDefaults(Xpp3Dom userConfig, Xpp3Dom defaultConfig) {
+        return mergeXpp3Dom(userConfig, defaultConfig); // normal merge, not profile-style merge
+    }
+
+    /**
+     * Merges the user configuration of a step (dominant) with the configuration of the plugin
+     * execution referenced by its <code>@executionId</code> (recessive).
+     */
+    public static Xpp3Dom mergeWithExecutionConfiguration(
+            Xpp3Dom stepConfig, Xpp3Dom executionConfig) {
+        return mergeXpp3Dom(stepConfig, executionConfig);
+    }
+
+    /**
+     * Produces the same tree as {@link Xpp3Dom#mergeXpp3Dom(Xpp3Dom, Xpp3Dom)} without modifying
+     * the dominant tree. Trees using <code>combine.self</code> or <code>combine.children</code> are
+     * merged by plexus-utils on a copy of the dominant tree.
+     */
+    private static Xpp3Dom mergeXpp3Dom(Xpp3Dom dominant, Xpp3Dom recessive) {
+        if (dominant == null) {
+            return recessive != null ? new Xpp3Dom(recessive) : null;
+        }
+        Xpp3Dom merged = merge(dominant, recessive);
+        if (merged == UNSUPPORTED) {
+            return Xpp3Dom.mergeXpp3Dom(new Xpp3Dom(dominant), recessive);
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the merge of the two nodes as a new tree. Children of the dominant node are merged
+     * with the recessive children of the same name in order; recessive children whose name the
+     * dominant node lacks are appended.
+     */
+    private static Xpp3Dom merge(Xpp3Dom dominant, Xpp3Dom recessive) {
+        if (recessive == null) {
+            return new Xpp3Dom(dominant);
+        }
+        if (hasMergeDirective(dominant) || hasMergeDirective(recessive)) {
+            return UNSUPPORTED;
+        }
+        int dominantChildCount = dominant.getChildCount();
+        // merged children by position, null where the dominant child is unchanged
+        Xpp3Dom[] mergedChildren = new Xpp3Dom[dominantChildCount];
+        List<Xpp3Dom> appended = new ArrayList<>();
+        int recessiveChildCount = recessive.getChildCount();
+        // position of the next dominant child to merge with, per element name
+        Map<String, Integer> cursors = new HashMap<>();
+        for (int i = 0; i < recessiveChildCount; i++) {
+            Xpp3Dom recessiveChild = recessive.getChild(i);
+            String name = recessiveChild.getName();
+            Integer cursor = cursors.get(name);
+            if (cursor == null) {
+                cursor = nextChild(dominant, name, 0, dominantChildCount);
+                if (cursor == dominantChildCount) {
+                    cursor = -1; // no dominant child of this name
+                }
+            }
+            if (cursor < 0) {
+                appended.add(recessiveChild);
+                cursors.put(name, cursor);
+            } else if (cursor < dominantChildCount) {
+                Xpp3Dom mergedChild = merge(dominant.getChild(cursor), recessiveChild);
+                if (mergedChild == UNSUPPORTED) {
+                    return UNSUPPORTED;
+                }
+                mergedChildren[cursor] = mergedChild;
+                cursors.put(name, nextChild(dominant, name, cursor + 1, dominantChildCount));
+            }
+        }
+        Xpp3Dom merged = new Xpp3Dom(dominant.getName());
+        if (Xpp3Dom.isEmpty(dominant.getValue()) && !Xpp3Dom.isEmpty(recessive.getValue())) {
+            merged.setValue(recessive.getValue());
+            merged.setInputLocation(recessive.getInputLocation());
+        } else {
+            merged.setValue(dominant.getValue());
+            merged.setInputLocation(dominant.getInputLocation());
+        }
+        for (String attr : dominant.getAttributeNames()) {
+            merged.setAttribute(attr, dominant.getAttribute(attr));
+        }
+        for (String attr : recessive.getAttributeNames()) {
+            if (Xpp3Dom.isEmpty(dominant.getAttribute(attr))) {
+                merged.setAttribute(attr, recessive.getAttribute(attr));
+            }
+        }
+        for (int i = 0; i < dominantChildCount; i++) {
+            merged.addChild(
+                    mergedChildren[i] != null
+                            ? mergedChildren[i]
+                            : new Xpp3Dom(dominant.getChild(i)));
+        }
+        for (Xpp3Dom recessiveChild : appended) {
+            merged.addChild(new Xpp3Dom(recessiveChild));
+        }
+        return merged;
+    }
+
+    /**
+     * Replaces <code>@{name}</code> placeholders in values and attributes with the variables of a
+     * matrix variant. Placeholders of unknown variables are left as they are, so that plugins can
+     * still resolve their own late-replacement placeholders such as <code>@{argLine}</code>. Like
+     * the merge, this never modifies its argument; it returns the argument itself if it contains no
+     * known placeholder, and a new tree otherwise.
+     */
+    public static Xpp3Dom substitute(Xpp3Dom dom, Map<String, String> variables) {
+        if (dom == null || variables.isEmpty() || !hasPlaceholder(dom, variables)) {
+            return dom;
+        }
+        return copySubstituted(dom, variables);
+    }
+
+    private static boolean hasPlaceholder(Xpp3Dom dom, Map<String, String> variables) {
+        if (substitute(dom.getValue(), variables) != dom.getValue()) {
+            return true;
+        }
+        for (String attr : dom.getAttributeNames()) {
+            String attrValue = dom.getAttribute(attr);
+            if (substitute(attrValue, variables) != attrValue) {
+                return true;
+            }
+        }
+        int childCount = dom.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            if (hasPlaceholder(dom.getChild(i), variables)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Xpp3Dom copySubstituted(Xpp3Dom dom, Map<String, String> variables) {
+        Xpp3Dom copy = new Xpp3Dom(dom.getName());
+        copy.setValue(substitute(dom.getValue(), variables));
+        copy.setInputLocation(dom.getInputLocation());
+        for (String attr : dom.getAttributeNames()) {
+            copy.setAttribute(attr, substitute(dom.getAttribute(attr), variables));
+        }
+        int childCount = dom.getChildCount();
         for (int i = 0; i < childCount; i++) {
-            PlexusConfiguration child = configuration.getChild(i);
-            Xpp3Dom childDom = toXpp3Dom(child);
-            dom.addChild(childDom);
+            copy.addChild(copySubstituted(dom.getChild(i), variables));
+        }
+        return copy;
+    }
+
+    /** Returns the value itself if it contains no known placeholder. */
+    private static String substitute(String value, Map<String, String> variables) {
+        if (value == null || !value.contains("@{")) {
+            return value;
+        }
+        Matcher matcher = PLACEHOLDER.matcher(value);
+        StringBuilder sb = new StringBuilder();
+        boolean replaced = false;
+        while (matcher.find()) {
+            String replacement = variables.get(matcher.group(1));
+            if (replacement != null) {
+                matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+                replaced = true;
+            }
+        }
+        if (!replaced) {
+            return value;
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static boolean hasMergeDirective(Xpp3Dom dom) {
+        return dom.getAttribute(Xpp3Dom.SELF_COMBINATION_MODE_ATTRIBUTE) != null
+                || dom.getAttribute(Xpp3Dom.CHILDREN_COMBINATION_MODE_ATTRIBUTE) != null;
+    }
+
+    private static int nextChild(Xpp3Dom dom, String name, int from, int childCount) {
+        int i = from;
+        while (i < childCount && !name.equals(dom.getChild(i).getName())) {
+            i++;
         }
-        return dom;
+        return i;
     }
 }
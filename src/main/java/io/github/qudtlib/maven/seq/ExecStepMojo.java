@@ -0,0 +1,83 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.*;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Executes a single forked step in a worker JVM. This goal is invoked by {@link SeqMojo} for steps
+ * with <code>fork</code> enabled and is not meant to be used directly.
+ */
+@Mojo(name = "exec-step", defaultPhase = LifecyclePhase.NONE, threadSafe = true)
+public class ExecStepMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    @Parameter(defaultValue = "${project}", readonly = true)
+    private MavenProject project;
+
+    @Component private BuildPluginManager pluginManager;
+
+    @Component private MavenPluginManager mavenPluginManager;
+
+    /** The step to execute, written by the forking sequence. */
+    @Parameter(property = "seq.stepSpec", required = true)
+    private String stepSpec;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        Properties spec = new Properties();
+        try (Reader reader = Files.newBufferedReader(Path.of(stepSpec), StandardCharsets.UTF_8)) {
+            spec.load(reader);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not read step specification " + stepSpec, e);
+        }
+        PluginDescriptorCache descriptorCache = PluginDescriptorCache.forSession(session);
+        PluginDescriptorCache.ProjectPluginIndex projectIndex =
+                descriptorCache.getProjectIndex(project);
+        String key = spec.getProperty("groupId") + ":" + spec.getProperty("artifactId");
+        // use the plugin of the project, so its dependencies are the same as in the parent build
+        Plugin plugin = projectIndex.getBuildPlugin(key);
+        if (plugin == null) {
+            throw new MojoExecutionException(
+                    String.format("Plugin %s is not configured in the project", key));
+        }
+        PluginDescriptor pluginDescriptor =
+                descriptorCache.getPluginDescriptor(
+                        plugin, projectIndex, session, mavenPluginManager);
+        MojoDescriptor mojoDescriptor =
+                descriptorCache.getMojoDescriptor(pluginDescriptor, spec.getProperty("goal"));
+        MojoExecution mojoExecution =
+                new MojoExecution(mojoDescriptor, spec.getProperty("executionId"));
+        String configuration = spec.getProperty("configuration");
+        if (configuration != null) {
+            try {
+                mojoExecution.setConfiguration(ConfigurationConverter.parse(configuration));
+            } catch (XmlPullParserException | IOException e) {
+                throw new MojoExecutionException(
+                        "Invalid configuration in step specification " + stepSpec, e);
+            }
+        }
+        try {
+            pluginManager.executeMojo(session, mojoExecution);
+        } catch (PluginConfigurationException | PluginManagerException e) {
+            throw new MojoExecutionException(
+                    "Failed to execute " + mojoDescriptor.getFullGoalName(), e);
+        }
+    }
+}
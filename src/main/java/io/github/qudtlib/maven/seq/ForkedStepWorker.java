@@ -0,0 +1,116 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import org.codehaus.plexus.classworlds.ClassWorld;
+import org.codehaus.plexus.classworlds.launcher.Launcher;
+
+/**
+ * Main class of a worker JVM started by {@link WorkerPool}. It sets up Maven's class world once,
+ * like the <code>mvn</code> launcher does, and then runs one Maven invocation per request, so
+ * Maven's core classes stay loaded and JIT-compiled across steps.
+ *
+ * <p>The protocol is line-based on standard input and output: the worker prints <code>READY</code>
+ * once started, answers each <code>RUN</code> request (followed by the request file) with <code>
+ * DONE</code> (followed by Maven's exit code and the live heap in bytes), and exits on <code>EXIT
+ * </code> or end of input. Maven's own output goes to standard error, followed by {@link
+ * #OUTPUT_END} for each request.
+ */
+public class ForkedStepWorker {
+
+    /** Line written to standard error after the output of each request */
+    static final String OUTPUT_END = "\u0000seq-output-end";
+
+    public static void main(String[] args) throws Exception {
+        PrintStream protocol =
+                new PrintStream(new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+        // anything printed by Maven or by plugins must not end up in the protocol
+        System.setOut(System.err);
+        BufferedReader requests =
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+
+        Launcher launcher = new Launcher();
+        launcher.setSystemClassLoader(ForkedStepWorker.class.getClassLoader());
+        try (InputStream config =
+                Files.newInputStream(Path.of(System.getProperty("classworlds.conf")))) {
+            launcher.configure(config);
+        }
+        ClassWorld world = launcher.getWorld();
+        Class<?> cliClass = launcher.getMainClass();
+        Object cli = cliClass.getConstructor(ClassWorld.class).newInstance(world);
+        Method doMain =
+                cliClass.getMethod(
+                        "doMain",
+                        String[].class,
+                        String.class,
+                        PrintStream.class,
+                        PrintStream.class);
+        protocol.println("READY");
+
+        String line;
+        while ((line = requests.readLine()) != null && !line.equals("EXIT")) {
+            if (!line.startsWith("RUN ")) {
+                continue;
+            }
+            int exitCode;
+            ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            try {
+                Properties request = new Properties();
+                try (Reader reader =
+                        Files.newBufferedReader(
+                                Path.of(line.substring(4)), StandardCharsets.UTF_8)) {
+                    request.load(reader);
+                }
+                String[] mavenArgs = new String[Integer.parseInt(request.getProperty("args"))];
+                for (int i = 0; i < mavenArgs.length; i++) {
+                    mavenArgs[i] = request.getProperty("arg." + i);
+                }
+                System.setProperty(
+                        "maven.multiModuleProjectDirectory",
+                        request.getProperty("multiModuleProjectDirectory"));
+                Thread.currentThread().setContextClassLoader(launcher.getMainRealm());
+                exitCode =
+                        (Integer)
+                                doMain.invoke(
+                                        cli,
+                                        mavenArgs,
+                                        request.getProperty("workingDirectory"),
+                                        System.err,
+                                        System.err);
+            } catch (InvocationTargetException e) {
+                e.getCause().printStackTrace();
+                exitCode = 1;
+            } catch (Exception e) {
+                e.printStackTrace();
+                exitCode = 1;
+            } finally {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+            // marks the end of the step's output, which the parent reads from another pipe
+            System.err.println(OUTPUT_END);
+            System.err.flush();
+            protocol.println("DONE " + exitCode + " " + liveHeapBytes());
+        }
+    }
+
+    /** Heap in use after the most recent garbage collection of each pool. */
+    private static long liveHeapBytes() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directories that the input patterns of steps can match, for <code>seq:watch</code>. A
+ * pattern is watched from its longest leading path without wildcards: recursively if that is a
+ * directory or further segments follow, otherwise only its parent directory. The build directory
+ * and hidden directories are only watched if a pattern points into them. Directories that are
+ * created later are picked up as they appear.
+ */
+class InputWatcher implements AutoCloseable {
+
+    private final Path basedir;
+    private final Path buildDirectory;
+    private final List<String> patterns;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> recursiveDirectories = new HashSet<>();
+    private final Set<Path> registeredDirectories = new HashSet<>();
+
+    InputWatcher(Path basedir, Path buildDirectory, List<String> patterns) throws IOException {
+        this.basedir = basedir;
+        this.buildDirectory = buildDirectory;
+        this.patterns = patterns;
+        this.watchService = basedir.getFileSystem().newWatchService();
+        register(null);
+    }
+
+    /** Returns the number of watched directories. */
+    int getDirectoryCount() {
+        return directories.size();
+    }
+
+    /**
+     * Waits for the first change and then until no change has been seen for the quiet period.
+     * Returns the paths of the changed files relative to the base directory and separated by '/',
+     * or null if events were lost and any file may have changed.
+     */
+    Set<String> awaitChanges(long quietNanos) throws IOException, InterruptedException {
+        Set<String> changed = new TreeSet<>();
+        WatchKey key = watchService.take();
+        boolean complete = true;
+        while (key != null) {
+            complete &= collect(key, changed);
+            key = watchService.poll(quietNanos, TimeUnit.NANOSECONDS);
+        }
+        // directories of patterns that did not exist before may have been created
+        register(changed);
+        return complete ? changed : null;
+    }
+
+    /** Adds the changed paths of the key's events; returns false if events were lost. */
+    private boolean collect(WatchKey key, Set<String> changed) throws IOException {
+        Path directory = directories.get(key);
+        boolean complete = true;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                complete = false;
+                continue;
+            }
+            if (directory == null) {
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && recursiveDirectories.contains(directory)
+                    && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                registerTree(path, changed);
+            }
+            changed.add(toRelativePath(path));
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+            recursiveDirectories.remove(directory);
+            registeredDirectories.remove(directory);
+        }
+        return complete;
+    }
+
+    private String toRelativePath(Path path) {
+        return basedir.relativize(path)
+                .toString()
+                .replace(path.getFileSystem().getSeparator(), "/");
+    }
+
+    /**
+     * Registers the directories the patterns point to. Files in directories that were not watched
+     * before are added to <code>changed</code>, if given: they were created together with their
+     * directory and have no events of their own.
+     */
+    private void register(Set<String> changed) throws IOException {
+        for (String pattern : patterns) {
+            String trimmed = pattern.trim().replace('\\', '/');
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String[] segments = trimmed.split("/");
+            Path root = basedir;
+            int literal = 0;
+            while (literal < segments.length
+                    && segments[literal].indexOf('*') < 0
+                    && segments[literal].indexOf('?') < 0) {
+                root = root.resolve(segments[literal]);
+                literal++;
+            }
+            root = root.normalize();
+            boolean recursive = literal < segments.length || Files.isDirectory(root);
+            while (!Files.isDirectory(root) && root.startsWith(basedir) && !root.equals(basedir)) {
+                // a missing directory or a file: watch the parent for it to change or appear
+                root = root.getParent();
+                recursive = false;
+            }
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            if (recursive) {
+                registerTree(root, changed);
+            } else {
+                registerDirectory(root);
+            }
+        }
+    }
+
+    private void registerTree(Path root, Set<String> changed) throws IOException {
+        Files.walkFileTree(
+                root,
+                new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(
+                            Path dir, BasicFileAttributes attributes) throws IOException {
+                        if (!dir.equals(root)
+                                && (dir.equals(buildDirectory)
+                                        || dir.getFileName().toString().startsWith("."))) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        boolean added = registerDirectory(dir);
+                        recursiveDirectories.add(dir);
+                        if (added && changed != null) {
+                            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                                for (Path file : files) {
+                                    changed.add(toRelativePath(file));
+                                }
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        // deleted while walking
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    /** Registers the directory and returns whether it was not watched before. */
+    private boolean registerDirectory(Path directory) throws IOException {
+        WatchKey key =
+                directory.register(
+                        watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+        directories.put(key, directory);
+        return registeredDirectories.add(directory);
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
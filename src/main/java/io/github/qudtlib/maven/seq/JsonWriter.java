@@ -0,0 +1,164 @@
+package io.github.qudtlib.maven.seq;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Writes indented JSON for the performance reports and the plan export. Objects and arrays are
+ * written with one member per line; inline objects, used for table-like rows, on a single line.
+ */
+final class JsonWriter {
+
+    private final StringBuilder out = new StringBuilder();
+    private final Deque<Scope> scopes = new ArrayDeque<>();
+    private boolean afterName;
+
+    /** An open object or array */
+    private static final class Scope {
+        private final char close;
+        private final boolean inline;
+        private boolean empty = true;
+
+        private Scope(char close, boolean inline) {
+            this.close = close;
+            this.inline = inline;
+        }
+    }
+
+    JsonWriter beginObject() {
+        return open('{', '}', false);
+    }
+
+    /** Begins an object written on a single line. */
+    JsonWriter beginInlineObject() {
+        return open('{', '}', true);
+    }
+
+    JsonWriter beginArray() {
+        return open('[', ']', false);
+    }
+
+    /** Ends the innermost open object or array. */
+    JsonWriter end() {
+        Scope scope = scopes.pop();
+        if (!scope.inline && !scope.empty) {
+            newLine();
+        }
+        out.append(scope.close);
+        return this;
+    }
+
+    JsonWriter name(String name) {
+        separate();
+        out.append(quote(name)).append(": ");
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        separate();
+        out.append(quote(value));
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        separate();
+        out.append(value);
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        separate();
+        out.append(value);
+        return this;
+    }
+
+    JsonWriter nullValue() {
+        separate();
+        out.append("null");
+        return this;
+    }
+
+    JsonWriter property(String name, String value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter property(String name, long value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter property(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private JsonWriter open(char open, char close, boolean inline) {
+        separate();
+        out.append(open);
+        scopes.push(new Scope(close, inline || (!scopes.isEmpty() && scopes.peek().inline)));
+        return this;
+    }
+
+    /** Writes what precedes a value or name: a comma after an earlier member and the layout. */
+    private void separate() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        Scope scope = scopes.peek();
+        if (scope == null) {
+            return;
+        }
+        if (!scope.empty) {
+            out.append(scope.inline ? ", " : ",");
+        }
+        if (!scope.inline) {
+            newLine();
+        }
+        scope.empty = false;
+    }
+
+    private void newLine() {
+        out.append('\n');
+        for (int i = 0; i < scopes.size(); i++) {
+            out.append("  ");
+        }
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,392 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.*;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Captures the output of steps, so that steps running concurrently in several modules do not
+ * interleave their output line by line and do not contend for the console.
+ *
+ * <p>While capture is installed, Maven's console logger and <code>System.out</code>/<code>
+ * System.err</code> write to a {@link RoutingStream}. Output of a thread that belongs to a step,
+ * including threads the step starts, goes to the step's {@link StepLog}; all other output goes to
+ * the console as before. A step log buffers in memory and hands full buffers to a single background
+ * writer that appends them to the step's log file, so a chatty step neither blocks other steps nor
+ * grows without bound. A log printed after its step is streamed from the file to the console while
+ * all other console output waits, so it stays one block without being read into memory.
+ *
+ * <p>Maven's console logger caches <code>System.out</code> when it starts. It is redirected through
+ * the private <code>CONFIG_PARAMS.outputChoice</code> of slf4j's <code>SimpleLogger</code>, which
+ * only the Maven versions in {@link #MAVEN_VERSIONS} bundle; {@link #checkLoggerHook} fails on
+ * anything else rather than capturing part of the output.
+ */
+class LogCapture {
+
+    /** Maven versions whose console logger can be redirected */
+    static final String MAVEN_VERSIONS = "[3.5,4)";
+
+    private static final InheritableThreadLocal<StepLog> CURRENT = new InheritableThreadLocal<>();
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /** Held while writing to the console, so that a replayed step log is not interleaved */
+    private static final Object CONSOLE_LOCK = new Object();
+
+    private static int installations;
+    private static LoggerHook loggerHook;
+    private static PrintStream originalOut;
+    private static PrintStream originalErr;
+    private static PrintStream console;
+    private static ThreadPoolExecutor writer;
+
+    private LogCapture() {}
+
+    /**
+     * Locates Maven's console logger. Throws an {@link IllegalStateException} naming the cause if
+     * it is not the slf4j <code>SimpleLogger</code> this class redirects.
+     */
+    static synchronized void checkLoggerHook() {
+        if (loggerHook == null) {
+            loggerHook = new LoggerHook();
+        }
+    }
+
+    /**
+     * Starts routing output; calls must be paired with {@link #uninstall} and preceded by {@link
+     * #checkLoggerHook}. Returns the stream that reaches the console.
+     */
+    static synchronized PrintStream install() {
+        if (installations++ > 0) {
+            return console;
+        }
+        originalOut = System.out;
+        originalErr = System.err;
+        console = loggerHook.getTarget();
+        loggerHook.redirect(RoutingStream.to(console));
+        System.setOut(RoutingStream.to(originalOut));
+        System.setErr(RoutingStream.to(originalErr));
+        return console;
+    }
+
+    /** Stops routing output when the last installation is removed. */
+    static synchronized void uninstall() {
+        if (installations == 0 || --installations > 0) {
+            return;
+        }
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+        loggerHook.restore();
+    }
+
+    /** Starts capturing the output of the current thread, and of threads it starts, to the log. */
+    static void begin(StepLog stepLog) {
+        CURRENT.set(stepLog);
+    }
+
+    /** Stops capturing the output of the current thread. */
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns the stream capturing the output of the current thread's step, or the fallback if the
+     * thread does not belong to a step or capture is not installed.
+     */
+    static PrintStream currentStream(PrintStream fallback) {
+        StepLog stepLog = CURRENT.get();
+        return stepLog != null ? stepLog.getStream(fallback) : fallback;
+    }
+
+    /**
+     * Wraps a task of a long-lived thread that may be started by a step, so that the thread does
+     * not inherit the step's log.
+     */
+    static Runnable detached(Runnable task) {
+        return () -> {
+            CURRENT.remove();
+            task.run();
+        };
+    }
+
+    /**
+     * Creates a daemon thread for a long-lived helper task that may be started by a step. The
+     * thread neither inherits the step's log nor its context class loader, which would keep the
+     * step's plugin realm reachable for as long as the thread lives.
+     */
+    static Thread detachedThread(Runnable task, String name) {
+        Thread t = new Thread(detached(task), name);
+        t.setDaemon(true);
+        t.setContextClassLoader(null);
+        return t;
+    }
+
+    /**
+     * Writes the header followed by the content of the log file to the console as one block. The
+     * file is streamed, and console output of other threads waits until the block is complete.
+     */
+    static void replay(PrintStream console, byte[] header, Path file) throws IOException {
+        synchronized (CONSOLE_LOCK) {
+            console.write(header, 0, header.length);
+            if (Files.exists(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    in.transferTo(console);
+                }
+            }
+            console.flush();
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor writer() {
+        if (writer == null) {
+            // a full queue blocks the producing step instead of buffering without bound
+            writer =
+                    new ThreadPoolExecutor(
+                            1,
+                            1,
+                            0,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(64),
+                            r -> detachedThread(r, "seq-log-writer"),
+                            (r, executor) -> {
+                                try {
+                                    executor.getQueue().put(r);
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                    throw new RejectedExecutionException(e);
+                                }
+                            });
+        }
+        return writer;
+    }
+
+    /** The captured output of one step. */
+    static class StepLog {
+        private final Path file;
+        private final int bufferSize;
+        private final ByteArrayOutputStream buffer;
+        private final PrintStream stream;
+        private long bytes;
+        private long lines;
+        private boolean closed;
+        private Future<?> lastWrite = CompletableFuture.completedFuture(null);
+        private volatile IOException writeFailure;
+
+        StepLog(Path file, int bufferSize) throws IOException {
+            this.file = file;
+            this.bufferSize = Math.max(1024, bufferSize);
+            this.buffer = new ByteArrayOutputStream(Math.min(this.bufferSize, 8192));
+            Files.createDirectories(file.getParent());
+            Files.deleteIfExists(file);
+            this.stream =
+                    new PrintStream(
+                            new OutputStream() {
+                                @Override
+                                public void write(int b) {
+                                    append(new byte[] {(byte) b}, 0, 1);
+                                }
+
+                                @Override
+                                public void write(byte[] b, int off, int len) {
+                                    append(b, off, len);
+                                }
+                            },
+                            false,
+                            CHARSET);
+        }
+
+        private synchronized void append(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    lines++;
+                }
+            }
+            bytes += len;
+            buffer.write(b, off, len);
+            if (buffer.size() >= bufferSize) {
+                spill();
+            }
+        }
+
+        /** Hands the buffered output to the background writer. */
+        private void spill() {
+            if (buffer.size() == 0) {
+                return;
+            }
+            byte[] chunk = buffer.toByteArray();
+            buffer.reset();
+            lastWrite =
+                    writer().submit(
+                                    () -> {
+                                        try {
+                                            Files.write(
+                                                    file,
+                                                    chunk,
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.APPEND);
+                                        } catch (IOException e) {
+                                            writeFailure = e;
+                                        }
+                                    });
+        }
+
+        /**
+         * Stream for the step's threads. After the step has completed, output of threads it left
+         * running goes to the console.
+         */
+        synchronized PrintStream getStream(PrintStream console) {
+            return closed ? console : stream;
+        }
+
+        /** Stops capturing and writes all captured output to the log file. */
+        void close() throws IOException {
+            synchronized (this) {
+                closed = true;
+            }
+            // outside the lock: writers hold the stream's lock while waiting for this one
+            stream.flush();
+            Future<?> pending;
+            synchronized (this) {
+                spill();
+                pending = lastWrite;
+            }
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing " + file);
+            } catch (ExecutionException e) {
+                throw new IOException("Could not write " + file, e.getCause());
+            }
+            if (writeFailure != null) {
+                throw writeFailure;
+            }
+        }
+
+        Path getFile() {
+            return file;
+        }
+
+        synchronized String getSummary() {
+            return String.format(
+                    Locale.ROOT,
+                    "%d lines, %s",
+                    lines,
+                    bytes < 1024 ? bytes + " bytes" : (bytes + 512) / 1024 + " KB");
+        }
+    }
+
+    /**
+     * Sends the bytes written by each thread to its step's log, or to the console if the thread
+     * does not belong to a step. Only the step log, or the console and {@link #CONSOLE_LOCK}, are
+     * locked while writing.
+     */
+    private static class RoutingStream extends OutputStream {
+        private final PrintStream console;
+
+        private RoutingStream(PrintStream console) {
+            this.console = console;
+        }
+
+        /** Returns a print stream that routes through a new routing stream. */
+        static PrintStream to(PrintStream console) {
+            return new PrintStream(new RoutingStream(console), true, CHARSET);
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) {
+            StepLog stepLog = CURRENT.get();
+            PrintStream stream = stepLog != null ? stepLog.getStream(null) : null;
+            if (stream != null) {
+                stream.write(buf, off, len);
+                return;
+            }
+            synchronized (CONSOLE_LOCK) {
+                console.write(buf, off, len);
+            }
+        }
+
+        @Override
+        public void flush() {
+            StepLog stepLog = CURRENT.get();
+            PrintStream stream = stepLog != null ? stepLog.getStream(null) : null;
+            (stream != null ? stream : console).flush();
+        }
+    }
+
+    /**
+     * Replaces the output choice of slf4j's <code>SimpleLogger</code>, the console logger of Maven
+     * 3, which holds the stream all log output goes to.
+     */
+    private static class LoggerHook {
+        private final Object configuration;
+        private final Field outputChoice;
+        private final Object originalChoice;
+        private final Constructor<?> choiceConstructor;
+        private final PrintStream target;
+
+        LoggerHook() {
+            try {
+                Class<?> simpleLogger =
+                        Class.forName(
+                                "org.slf4j.impl.SimpleLogger",
+                                true,
+                                MavenSession.class.getClassLoader());
+                Field configParams = simpleLogger.getDeclaredField("CONFIG_PARAMS");
+                configParams.setAccessible(true);
+                configuration = configParams.get(null);
+                outputChoice = configuration.getClass().getDeclaredField("outputChoice");
+                outputChoice.setAccessible(true);
+                originalChoice = outputChoice.get(configuration);
+                Method getTarget =
+                        originalChoice.getClass().getDeclaredMethod("getTargetPrintStream");
+                getTarget.setAccessible(true);
+                target = (PrintStream) getTarget.invoke(originalChoice);
+                choiceConstructor =
+                        originalChoice.getClass().getDeclaredConstructor(PrintStream.class);
+                choiceConstructor.setAccessible(true);
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                throw new IllegalStateException(
+                        "Cannot redirect Maven's console logger, which is not the slf4j"
+                                + " SimpleLogger of Maven "
+                                + MAVEN_VERSIONS
+                                + ": "
+                                + e,
+                        e);
+            }
+        }
+
+        PrintStream getTarget() {
+            return target;
+        }
+
+        void redirect(PrintStream stream) {
+            try {
+                outputChoice.set(configuration, choiceConstructor.newInstance(stream));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot redirect Maven's console logger", e);
+            }
+        }
+
+        void restore() {
+            try {
+                outputChoice.set(configuration, originalChoice);
+            } catch (IllegalAccessException e) {
+                // cannot happen, the field was made accessible
+            }
+        }
+    }
+}
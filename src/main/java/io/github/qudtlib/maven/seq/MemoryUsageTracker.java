@@ -0,0 +1,123 @@
+package io.github.qudtlib.maven.seq;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.*;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Heap and metaspace usage for {@link StepMetrics}. The peak heap usage of a step is the highest
+ * usage seen while it ran: at its start and end, and before each garbage collection in between, as
+ * reported by the collectors' notifications. Unlike resetting the peak usage of the memory pools,
+ * this works for steps running concurrently. Usage includes garbage not yet collected.
+ */
+class MemoryUsageTracker {
+
+    private static final Set<Watermark> ACTIVE = ConcurrentHashMap.newKeySet();
+
+    private static final NotificationListener LISTENER = MemoryUsageTracker::handleNotification;
+
+    private static final Set<String> HEAP_POOLS =
+            ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .map(MemoryPoolMXBean::getName)
+                    .collect(Collectors.toSet());
+
+    private static int watermarks;
+
+    private MemoryUsageTracker() {}
+
+    static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /** Returns the used metaspace, or -1 if the JVM has no metaspace pool. */
+    static long metaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.NON_HEAP && pool.getName().equals("Metaspace")) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return -1;
+    }
+
+    /** Starts tracking the peak heap usage, beginning with the current usage. */
+    static Watermark start(long heapUsed) {
+        Watermark watermark = new Watermark(heapUsed);
+        synchronized (MemoryUsageTracker.class) {
+            if (watermarks++ == 0) {
+                for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                    if (gc instanceof NotificationEmitter) {
+                        ((NotificationEmitter) gc).addNotificationListener(LISTENER, null, null);
+                    }
+                }
+            }
+        }
+        ACTIVE.add(watermark);
+        return watermark;
+    }
+
+    private static void handleNotification(Notification notification, Object handback) {
+        if (!notification
+                .getType()
+                .equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+            return;
+        }
+        Map<String, MemoryUsage> beforeGc =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+                        .getGcInfo()
+                        .getMemoryUsageBeforeGc();
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> pool : beforeGc.entrySet()) {
+            if (HEAP_POOLS.contains(pool.getKey())) {
+                used += pool.getValue().getUsed();
+            }
+        }
+        for (Watermark watermark : ACTIVE) {
+            watermark.update(used);
+        }
+    }
+
+    /** The peak heap usage of one step. */
+    static class Watermark {
+        private final AtomicLong peak;
+
+        private Watermark(long heapUsed) {
+            this.peak = new AtomicLong(heapUsed);
+        }
+
+        private void update(long heapUsed) {
+            peak.accumulateAndGet(heapUsed, Math::max);
+        }
+
+        /** Stops tracking and returns the peak, including the current usage. */
+        long stop(long heapUsed) {
+            update(heapUsed);
+            if (ACTIVE.remove(this)) {
+                synchronized (MemoryUsageTracker.class) {
+                    if (--watermarks == 0) {
+                        for (GarbageCollectorMXBean gc :
+                                ManagementFactory.getGarbageCollectorMXBeans()) {
+                            if (gc instanceof NotificationEmitter) {
+                                try {
+                                    ((NotificationEmitter) gc).removeNotificationListener(LISTENER);
+                                } catch (ListenerNotFoundException e) {
+                                    // not an emitter of GC notifications
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return peak.get();
+        }
+    }
+}
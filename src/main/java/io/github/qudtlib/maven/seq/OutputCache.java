@@ -0,0 +1,289 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed store of step outputs, shared by all builds of the user. An entry is keyed by
+ * the fingerprint of the step, which covers its plugin coordinates, its merged configuration and
+ * the content of its declared inputs, so a step whose fingerprint has been seen before can restore
+ * its outputs instead of being executed.
+ *
+ * <p>Each entry is a directory holding the output files under their paths relative to the project
+ * and a manifest, which is written last and whose modification time records the last use of the
+ * entry. Once the store exceeds its maximum size, the least recently used entries are evicted.
+ */
+class OutputCache {
+
+    private static final String MANIFEST = "manifest";
+    private static final String FILES = "files";
+    private static final String TMP_PREFIX = ".tmp-";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final boolean hardLinks;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger stores = new AtomicInteger();
+
+    /**
+     * @param hardLinks whether to restore files as hard links to the entry rather than as copies
+     */
+    OutputCache(Path directory, long maxBytes, boolean hardLinks) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.hardLinks = hardLinks;
+    }
+
+    /** Returns the key of the outputs of a step with the specified fingerprint. */
+    static String computeKey(String fingerprint, List<String> outputs) {
+        MessageDigest digest = UpToDateCheck.newDigest();
+        digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+        for (String output : outputs) {
+            digest.update((byte) 0);
+            digest.update(output.trim().getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Restores the files of the entry below the base directory, replacing existing files. Returns
+     * the number of files restored, or -1 if there is no entry for the key.
+     */
+    int restore(String key, Path basedir) throws IOException {
+        Path entry = directory.resolve(key);
+        Manifest manifest = Manifest.read(entry.resolve(MANIFEST));
+        if (manifest == null) {
+            misses.incrementAndGet();
+            return -1;
+        }
+        try {
+            for (String file : manifest.files) {
+                Path target = basedir.resolve(file);
+                Path source = entry.resolve(FILES).resolve(file);
+                Files.createDirectories(target.getParent());
+                // never write through a link to an entry restored earlier
+                Files.deleteIfExists(target);
+                if (!hardLinks || !link(target, source)) {
+                    copy(source, target);
+                }
+            }
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            throw e;
+        }
+        touch(entry.resolve(MANIFEST));
+        hits.incrementAndGet();
+        return manifest.files.size();
+    }
+
+    /**
+     * Stores the files matching the output patterns under the key, unless there already is an entry
+     * for it or a pattern matches no file.
+     */
+    void store(String key, Path basedir, List<String> outputs) throws IOException {
+        Path entry = directory.resolve(key);
+        if (Files.isRegularFile(entry.resolve(MANIFEST))) {
+            touch(entry.resolve(MANIFEST));
+            return;
+        }
+        Set<String> files = new TreeSet<>();
+        for (String output : outputs) {
+            List<String> matched = UpToDateCheck.resolveFiles(basedir, List.of(output));
+            if (matched.isEmpty()) {
+                return;
+            }
+            files.addAll(matched);
+        }
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempDirectory(directory, TMP_PREFIX);
+        try {
+            long size = 0;
+            for (String file : files) {
+                Path target = tmp.resolve(FILES).resolve(file);
+                Files.createDirectories(target.getParent());
+                copy(basedir.resolve(file), target);
+                size += Files.size(target);
+            }
+            new Manifest(size, new ArrayList<>(files)).write(tmp.resolve(MANIFEST));
+            try {
+                Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE);
+                stores.incrementAndGet();
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // stored concurrently by another build
+            }
+        } finally {
+            if (Files.exists(tmp)) {
+                deleteRecursively(tmp);
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the store fits into its maximum size. Returns
+     * the number of entries deleted.
+     */
+    int evict() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        List<Path> entries = new ArrayList<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, FileTime> lastUsed = new HashMap<>();
+        long total = 0;
+        try (Stream<Path> list = Files.list(directory)) {
+            for (Path entry : (Iterable<Path>) list::iterator) {
+                if (entry.getFileName().toString().startsWith(TMP_PREFIX)) {
+                    continue;
+                }
+                Path manifestFile = entry.resolve(MANIFEST);
+                Manifest manifest = Manifest.read(manifestFile);
+                if (manifest == null) {
+                    continue;
+                }
+                entries.add(entry);
+                sizes.put(entry, manifest.size);
+                lastUsed.put(entry, Files.getLastModifiedTime(manifestFile));
+                total += manifest.size;
+            }
+        }
+        if (total <= maxBytes) {
+            return 0;
+        }
+        entries.sort(Comparator.comparing(lastUsed::get));
+        int evicted = 0;
+        for (Path entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            // removing the manifest first makes the entry invisible to concurrent builds
+            try {
+                Files.deleteIfExists(entry.resolve(MANIFEST));
+                deleteRecursively(entry);
+            } catch (IOException e) {
+                // in use or already deleted by another build
+            }
+            total -= sizes.get(entry);
+            evicted++;
+        }
+        return evicted;
+    }
+
+    int getStores() {
+        return stores.get();
+    }
+
+    /**
+     * Returns a summary such as "3 hits, 1 miss (75% hit rate)", or null if nothing was looked up.
+     */
+    String getSummary() {
+        int hitCount = hits.get();
+        int lookups = hitCount + misses.get();
+        if (lookups == 0) {
+            return null;
+        }
+        return String.format(
+                Locale.ROOT,
+                "%d hit%s, %d miss%s (%d%% hit rate)",
+                hitCount,
+                hitCount == 1 ? "" : "s",
+                lookups - hitCount,
+                lookups - hitCount == 1 ? "" : "es",
+                Math.round(100.0 * hitCount / lookups));
+    }
+
+    private static boolean link(Path link, Path existing) {
+        try {
+            Files.createLink(link, existing);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            // different file store or no hard links, copy instead
+            return false;
+        }
+    }
+
+    /** Copies the file within the kernel where the platform supports it. */
+    private static void copy(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out =
+                        FileChannel.open(
+                                target,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // only affects the eviction order
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(root)) {
+            List<Path> paths = new ArrayList<>();
+            walk.forEach(paths::add);
+            Collections.reverse(paths);
+            for (Path path : paths) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /** The total size and the relative paths of the files of an entry. */
+    private static class Manifest {
+        private final long size;
+        private final List<String> files;
+
+        private Manifest(long size, List<String> files) {
+            this.size = size;
+            this.files = files;
+        }
+
+        /** Returns null if the file does not exist or is damaged. */
+        private static Manifest read(Path file) {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            try {
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                if (lines.isEmpty()) {
+                    return null;
+                }
+                long size = Long.parseLong(lines.get(0));
+                return new Manifest(size, new ArrayList<>(lines.subList(1, lines.size())));
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        private void write(Path file) throws IOException {
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write(Long.toString(size));
+                writer.write('\n');
+                for (String path : files) {
+                    writer.write(path);
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+}
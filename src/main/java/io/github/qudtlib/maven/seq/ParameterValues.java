@@ -0,0 +1,76 @@
+package io.github.qudtlib.maven.seq;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Parses the durations and sizes of plugin parameters, such as <code>90s</code> or <code>1g</code>.
+ */
+final class ParameterValues {
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)\\s*(ms|s|m|h)?");
+    private static final Pattern SIZE = Pattern.compile("(\\d+)\\s*([kmg])?");
+
+    private ParameterValues() {}
+
+    /**
+     * Parses a duration such as <code>90s</code>, <code>15m</code>, <code>2h</code> or <code>500ms
+     * </code>; a number without unit is in seconds. Returns 0 for an empty value.
+     */
+    static long parseDuration(String value, String parameter) throws MojoExecutionException {
+        Matcher matcher = match(DURATION, value, parameter, "a number followed by ms, s, m or h");
+        if (matcher == null) {
+            return 0;
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(2) == null ? "s" : matcher.group(2);
+        switch (unit) {
+            case "ms":
+                return TimeUnit.MILLISECONDS.toNanos(amount);
+            case "m":
+                return TimeUnit.MINUTES.toNanos(amount);
+            case "h":
+                return TimeUnit.HOURS.toNanos(amount);
+            default:
+                return TimeUnit.SECONDS.toNanos(amount);
+        }
+    }
+
+    /**
+     * Parses a size such as <code>512m</code> or <code>2g</code>; a number without unit is in
+     * bytes. Returns 0 for an empty value.
+     */
+    static long parseSize(String value, String parameter) throws MojoExecutionException {
+        Matcher matcher = match(SIZE, value, parameter, "a size such as 512m or 2g");
+        if (matcher == null) {
+            return 0;
+        }
+        int shift = matcher.group(2) == null ? 0 : 10 * ("kmg".indexOf(matcher.group(2)) + 1);
+        try {
+            return Math.multiplyExact(Long.parseLong(matcher.group(1)), 1L << shift);
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw invalid(value, parameter, "a size such as 512m or 2g");
+        }
+    }
+
+    /** Returns null for an empty value. */
+    private static Matcher match(Pattern pattern, String value, String parameter, String expected)
+            throws MojoExecutionException {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        Matcher matcher = pattern.matcher(value.trim().toLowerCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw invalid(value, parameter, expected);
+        }
+        return matcher;
+    }
+
+    private static MojoExecutionException invalid(String value, String parameter, String expected) {
+        return new MojoExecutionException(
+                "Invalid " + parameter + " '" + value + "'. Expected " + expected);
+    }
+}
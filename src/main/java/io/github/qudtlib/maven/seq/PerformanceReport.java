@@ -0,0 +1,239 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Collects the {@link StepMetrics} of one sequence execution and writes them, together with the
+ * sequence totals, as JSON and CSV. Reports of all executions in a build can additionally be merged
+ * into a reactor-wide summary.
+ */
+class PerformanceReport {
+
+    private static final String REACTOR_KEY = PerformanceReport.class.getName() + ".reactor";
+    private static final String CSV_HEADER =
+            "project,executionId,index,stepId,coordinates,status,wallNanos,cpuNanos,allocatedBytes,gcCount,gcTimeMillis,resolutionNanos,waitNanos,heapBeforeBytes,heapAfterBytes,heapPeakBytes,metaspaceBeforeBytes,metaspaceAfterBytes";
+
+    private final String projectId;
+    private final String executionId;
+    private final String label;
+    private final Instant startTime = Instant.now();
+    private final List<StepMetrics> steps = new ArrayList<>();
+    private long wallNanos;
+
+    PerformanceReport(String projectId, String executionId, String label) {
+        this.projectId = projectId;
+        this.executionId = executionId;
+        this.label = label;
+    }
+
+    synchronized void add(StepMetrics metrics) {
+        steps.add(metrics);
+    }
+
+    void setWallNanos(long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+
+    /** Writes <code>&lt;executionId&gt;.json</code> and <code>.csv</code> to the directory. */
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        String name = SeqMojo.toFileName(executionId);
+        writeString(directory.resolve(name + ".json"), toJson() + "\n");
+        writeString(
+                directory.resolve(name + ".csv"),
+                CSV_HEADER
+                        + "\n"
+                        + toCsvRows()
+                        + new Totals(getSteps(), wallNanos).toCsvRow(projectId, executionId));
+    }
+
+    /**
+     * Adds this report to the reactor summary of the session and rewrites the summary files in the
+     * directory. The summary grows with each execution, so it is complete after the last one.
+     */
+    void writeReactorSummary(MavenSession session, Path directory) throws IOException {
+        @SuppressWarnings("unchecked")
+        List<PerformanceReport> reports =
+                (List<PerformanceReport>)
+                        session.getRepositorySession()
+                                .getData()
+                                .computeIfAbsent(REACTOR_KEY, ArrayList::new);
+        synchronized (reports) {
+            reports.add(this);
+            Files.createDirectories(directory);
+            JsonWriter json = new JsonWriter().beginObject().name("sequences").beginArray();
+            StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+            List<StepMetrics> all = new ArrayList<>();
+            long wall = 0;
+            for (PerformanceReport report : reports) {
+                report.writeJson(json);
+                csv.append(report.toCsvRows());
+                all.addAll(report.getSteps());
+                wall += report.wallNanos;
+            }
+            json.end().name("totals");
+            new Totals(all, wall).writeJson(json);
+            writeString(directory.resolve("reactor-summary.json"), json.end() + "\n");
+            writeString(directory.resolve("reactor-summary.csv"), csv.toString());
+        }
+    }
+
+    private synchronized List<StepMetrics> getSteps() {
+        List<StepMetrics> sorted = new ArrayList<>(steps);
+        sorted.sort(Comparator.comparingInt(StepMetrics::getIndex));
+        return sorted;
+    }
+
+    String toJson() {
+        return writeJson(new JsonWriter()).toString();
+    }
+
+    private JsonWriter writeJson(JsonWriter json) {
+        List<StepMetrics> sorted = getSteps();
+        json.beginObject()
+                .property("project", projectId)
+                .property("executionId", executionId)
+                .property("label", label)
+                .property("startTime", startTime.toString())
+                .name("totals");
+        new Totals(sorted, wallNanos).writeJson(json);
+        json.name("steps").beginArray();
+        for (StepMetrics m : sorted) {
+            json.beginInlineObject()
+                    .property("index", m.getIndex())
+                    .property("stepId", m.getStepId())
+                    .property("coordinates", m.getCoordinates())
+                    .property("status", m.getStatus())
+                    .property("wallNanos", m.getWallNanos())
+                    .property("cpuNanos", m.getCpuNanos())
+                    .property("allocatedBytes", m.getAllocatedBytes())
+                    .property("gcCount", m.getGcCount())
+                    .property("gcTimeMillis", m.getGcTimeMillis())
+                    .property("resolutionNanos", m.getResolutionNanos())
+                    .property("waitNanos", m.getWaitNanos())
+                    .property("heapBeforeBytes", m.getHeapBeforeBytes())
+                    .property("heapAfterBytes", m.getHeapAfterBytes())
+                    .property("heapPeakBytes", m.getHeapPeakBytes())
+                    .property("metaspaceBeforeBytes", m.getMetaspaceBeforeBytes())
+                    .property("metaspaceAfterBytes", m.getMetaspaceAfterBytes())
+                    .end();
+        }
+        return json.end().end();
+    }
+
+    private String toCsvRows() {
+        StringBuilder sb = new StringBuilder();
+        for (StepMetrics m : getSteps()) {
+            sb.append(csv(projectId)).append(',');
+            sb.append(csv(executionId)).append(',');
+            sb.append(m.getIndex()).append(',');
+            sb.append(csv(m.getStepId())).append(',');
+            sb.append(csv(m.getCoordinates())).append(',');
+            sb.append(m.getStatus()).append(',');
+            sb.append(m.getWallNanos()).append(',');
+            sb.append(m.getCpuNanos()).append(',');
+            sb.append(m.getAllocatedBytes()).append(',');
+            sb.append(m.getGcCount()).append(',');
+            sb.append(m.getGcTimeMillis()).append(',');
+            sb.append(m.getResolutionNanos()).append(',');
+            sb.append(m.getWaitNanos()).append(',');
+            sb.append(m.getHeapBeforeBytes()).append(',');
+            sb.append(m.getHeapAfterBytes()).append(',');
+            sb.append(m.getHeapPeakBytes()).append(',');
+            sb.append(m.getMetaspaceBeforeBytes()).append(',');
+            sb.append(m.getMetaspaceAfterBytes()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** The sums of the step metrics and the highest heap peak, as JSON and as a CSV row. */
+    private static final class Totals {
+        private final int steps;
+        private final long wallNanos;
+        private long stepWall;
+        private long cpu;
+        private long allocated;
+        private long gcCount;
+        private long gcTime;
+        private long resolution;
+        private long wait;
+        private long heapPeak = -1;
+
+        Totals(List<StepMetrics> steps, long wallNanos) {
+            this.steps = steps.size();
+            this.wallNanos = wallNanos;
+            for (StepMetrics m : steps) {
+                stepWall += m.getWallNanos();
+                cpu += Math.max(0, m.getCpuNanos());
+                allocated += Math.max(0, m.getAllocatedBytes());
+                gcCount += m.getGcCount();
+                gcTime += m.getGcTimeMillis();
+                resolution += m.getResolutionNanos();
+                wait += m.getWaitNanos();
+                heapPeak = Math.max(heapPeak, m.getHeapPeakBytes());
+            }
+        }
+
+        void writeJson(JsonWriter json) {
+            json.beginObject()
+                    .property("steps", steps)
+                    .property("wallNanos", wallNanos)
+                    .property("stepWallNanos", stepWall)
+                    .property("cpuNanos", cpu)
+                    .property("allocatedBytes", allocated)
+                    .property("gcCount", gcCount)
+                    .property("gcTimeMillis", gcTime)
+                    .property("resolutionNanos", resolution)
+                    .property("waitNanos", wait)
+                    .property("heapPeakBytes", heapPeak)
+                    .end();
+        }
+
+        String toCsvRow(String projectId, String executionId) {
+            return String.join(
+                            ",",
+                            csv(projectId),
+                            csv(executionId),
+                            "",
+                            "",
+                            "",
+                            "TOTAL",
+                            String.valueOf(Math.max(wallNanos, stepWall)),
+                            String.valueOf(cpu),
+                            String.valueOf(allocated),
+                            String.valueOf(gcCount),
+                            String.valueOf(gcTime),
+                            String.valueOf(resolution),
+                            String.valueOf(wait),
+                            "",
+                            "",
+                            String.valueOf(heapPeak),
+                            "",
+                            "")
+                    + "\n";
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static void writeString(Path file, String content) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.File;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Prints the resolved plan of a sequence without running it: the fully qualified coordinates of
+ * each step, how it will be scheduled and its estimated cost from the timing history. The plan is
+ * stored for later runs of the sequence like one resolved by <code>seq:run</code>. Uses the
+ * configuration of the <code>seq:run</code> execution it is invoked for, e.g. <code>
+ * mvn seq:plan@my-sequence</code>.
+ */
+@Mojo(name = "plan", defaultPhase = LifecyclePhase.NONE, threadSafe = true)
+public class PlanMojo extends SeqMojo {
+
+    /**
+     * Also write the plan, including the merged configuration of each step, as JSON to this file
+     */
+    @Parameter(property = "seq.planFile")
+    private File planFile;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        plan(planFile);
+    }
+}
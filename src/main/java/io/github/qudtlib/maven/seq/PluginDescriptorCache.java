@@ -0,0 +1,300 @@
+package io.github.qudtlib.maven.seq;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Extension;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.MavenPluginManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoNotFoundException;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.eclipse.aether.repository.RemoteRepository;
+
+/**
+ * Caches plugin descriptors, mojo descriptors, converted default mojo configurations and
+ * per-project plugin indexes for the duration of a {@link MavenSession}. The cache is stored in the
+ * session's repository session data, so it is shared by all modules and all executions of the seq
+ * plugin in one build.
+ */
+class PluginDescriptorCache {
+
+    private static final String SESSION_KEY = PluginDescriptorCache.class.getName();
+
+    private final Map<String, CompletableFuture<PluginDescriptor>> pluginDescriptors =
+            new ConcurrentHashMap<>();
+
+    /** Mojo descriptors by goal, per plugin descriptor instance, since they point back to it */
+    private final Map<PluginDescriptor, Map<String, MojoDescriptor>> mojoDescriptors =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final Map<String, Xpp3Dom> defaultConfigurations = new ConcurrentHashMap<>();
+    private final Map<String, ProjectPluginIndex> projectIndexes = new ConcurrentHashMap<>();
+
+    private final AtomicLong pluginDescriptorHits = new AtomicLong();
+    private final AtomicLong pluginDescriptorMisses = new AtomicLong();
+    private final AtomicLong mojoDescriptorHits = new AtomicLong();
+    private final AtomicLong mojoDescriptorMisses = new AtomicLong();
+    private final AtomicLong defaultConfigurationHits = new AtomicLong();
+    private final AtomicLong defaultConfigurationMisses = new AtomicLong();
+    private final AtomicLong indexHits = new AtomicLong();
+    private final AtomicLong indexMisses = new AtomicLong();
+
+    /** Returns the cache of the specified session, creating it on first access. */
+    static PluginDescriptorCache forSession(MavenSession session) {
+        return (PluginDescriptorCache)
+                session.getRepositorySession()
+                        .getData()
+                        .computeIfAbsent(SESSION_KEY, PluginDescriptorCache::new);
+    }
+
+    /** Returns the plugin index of the specified project, building it on first access. */
+    ProjectPluginIndex getProjectIndex(MavenProject project) {
+        String key = project.getId() + "@" + project.getBasedir();
+        ProjectPluginIndex index = projectIndexes.get(key);
+        if (index != null) {
+            indexHits.incrementAndGet();
+            return index;
+        }
+        indexMisses.incrementAndGet();
+        return projectIndexes.computeIfAbsent(key, k -> new ProjectPluginIndex(project));
+    }
+
+    /**
+     * Returns the descriptor of the specified plugin, resolving it through the plugin manager if it
+     * has not been resolved for the same plugin repositories and build extensions in this session
+     * yet. Concurrent requests for the same plugin wait for a single resolution.
+     */
+    PluginDescriptor getPluginDescriptor(
+            Plugin plugin,
+            ProjectPluginIndex index,
+            MavenSession session,
+            MavenPluginManager mavenPluginManager)
+            throws MojoExecutionException {
+        String key = pluginKey(plugin) + index.getScope();
+        CompletableFuture<PluginDescriptor> created = new CompletableFuture<>();
+        CompletableFuture<PluginDescriptor> descriptor =
+                pluginDescriptors.putIfAbsent(key, created);
+        if (descriptor != null) {
+            pluginDescriptorHits.incrementAndGet();
+        } else {
+            pluginDescriptorMisses.incrementAndGet();
+            descriptor = created;
+            try {
+                created.complete(
+                        mavenPluginManager.getPluginDescriptor(
+                                plugin,
+                                index.getRemoteRepositories(),
+                                session.getRepositorySession()));
+            } catch (Exception e) {
+                // do not cache failures, a later attempt may succeed
+                pluginDescriptors.remove(key, created);
+                created.completeExceptionally(e);
+            }
+        }
+        try {
+            return descriptor.join();
+        } catch (CompletionException e) {
+            throw new MojoExecutionException(
+                    "Failed to resolve plugin descriptor for "
+                            + plugin.getGroupId()
+                            + ":"
+                            + plugin.getArtifactId(),
+                    e.getCause());
+        }
+    }
+
+    /** Returns the descriptor of the specified goal of the plugin. */
+    MojoDescriptor getMojoDescriptor(PluginDescriptor pluginDescriptor, String goal)
+            throws MojoExecutionException {
+        Map<String, MojoDescriptor> byGoal =
+                mojoDescriptors.computeIfAbsent(pluginDescriptor, d -> new ConcurrentHashMap<>());
+        MojoDescriptor mojoDescriptor = byGoal.get(goal);
+        if (mojoDescriptor != null) {
+            mojoDescriptorHits.incrementAndGet();
+            return mojoDescriptor;
+        }
+        mojoDescriptorMisses.incrementAndGet();
+        try {
+            mojoDescriptor = pluginDescriptor.getMojo(goal);
+            if (mojoDescriptor == null) {
+                throw new MojoNotFoundException(goal, pluginDescriptor);
+            }
+        } catch (Exception e) {
+            throw new MojoExecutionException("Failed to get mojo descriptor for " + goal, e);
+        }
+        byGoal.putIfAbsent(goal, mojoDescriptor);
+        return mojoDescriptor;
+    }
+
+    /**
+     * Returns the default configuration of the mojo, converted to an {@link Xpp3Dom} on first
+     * access. The returned tree is shared and must not be modified.
+     */
+    Xpp3Dom getDefaultConfiguration(MojoDescriptor mojoDescriptor) {
+        if (mojoDescriptor.getMojoConfiguration() == null) {
+            return null;
+        }
+        String key = mojoKey(mojoDescriptor.getPluginDescriptor(), mojoDescriptor.getGoal());
+        Xpp3Dom defaultConfiguration = defaultConfigurations.get(key);
+        if (defaultConfiguration != null) {
+            defaultConfigurationHits.incrementAndGet();
+            return defaultConfiguration;
+        }
+        defaultConfigurationMisses.incrementAndGet();
+        return defaultConfigurations.computeIfAbsent(
+                key, k -> ConfigurationConverter.toXpp3Dom(mojoDescriptor.getMojoConfiguration()));
+    }
+
+    /**
+     * Drops the plugin descriptor and its mojo descriptors, which reference the plugin's realm. A
+     * later request for the plugin resolves it again.
+     */
+    void release(PluginDescriptor pluginDescriptor) {
+        pluginDescriptors.values().removeIf(d -> d.getNow(null) == pluginDescriptor);
+        mojoDescriptors.remove(pluginDescriptor);
+    }
+
+    String getStatistics() {
+        return String.format(
+                "plugin descriptors %d hits/%d misses, mojo descriptors %d hits/%d misses, default configurations %d hits/%d misses, plugin indexes %d hits/%d misses",
+                pluginDescriptorHits.get(),
+                pluginDescriptorMisses.get(),
+                mojoDescriptorHits.get(),
+                mojoDescriptorMisses.get(),
+                defaultConfigurationHits.get(),
+                defaultConfigurationMisses.get(),
+                indexHits.get(),
+                indexMisses.get());
+    }
+
+    /**
+     * Returns the groupId:artifactId:version key of the plugin. Plugin dependencies declared in the
+     * POM are appended, because Maven builds a separate plugin realm for them and that realm is
+     * attached to the descriptor.
+     */
+    private static String pluginKey(Plugin plugin) {
+        String key = gav(plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion());
+        if (plugin.getDependencies() == null || plugin.getDependencies().isEmpty()) {
+            return key;
+        }
+        return key
+                + plugin.getDependencies().stream()
+                        .map(d -> gav(d.getGroupId(), d.getArtifactId(), d.getVersion()))
+                        .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static String mojoKey(PluginDescriptor pluginDescriptor, String goal) {
+        return gav(
+                        pluginDescriptor.getGroupId(),
+                        pluginDescriptor.getArtifactId(),
+                        pluginDescriptor.getVersion())
+                + ":"
+                + goal;
+    }
+
+    private static String gav(String groupId, String artifactId, String version) {
+        return groupId + ":" + artifactId + ":" + version;
+    }
+
+    /**
+     * The build plugins of a project, indexed by groupId:artifactId and by artifactId, together
+     * with the project's plugin repositories. A pluginManagement entry for a build plugin is not
+     * indexed, so that it does not make shorthand coordinates for the plugin ambiguous.
+     */
+    static class ProjectPluginIndex {
+        private final Map<String, Plugin> buildPlugins;
+        private final Map<String, List<Plugin>> pluginsByArtifactId = new HashMap<>();
+        private final List<RemoteRepository> remoteRepositories;
+        private final String scope;
+
+        ProjectPluginIndex(MavenProject project) {
+            this.buildPlugins = project.getBuild().getPluginsAsMap();
+            for (Plugin plugin : project.getBuild().getPlugins()) {
+                pluginsByArtifactId
+                        .computeIfAbsent(plugin.getArtifactId(), k -> new ArrayList<>())
+                        .add(plugin);
+            }
+            if (project.getPluginManagement() != null) {
+                for (Plugin plugin : project.getPluginManagement().getPlugins()) {
+                    // a build plugin is also managed if a parent or the super POM manages it
+                    if (buildPlugins.containsKey(plugin.getKey())) {
+                        continue;
+                    }
+                    pluginsByArtifactId
+                            .computeIfAbsent(plugin.getArtifactId(), k -> new ArrayList<>())
+                            .add(plugin);
+                }
+            }
+            // the MavenProject of maven-project 2.2.1, which is on the compile classpath, returns
+            // raw lists, so their elements are cast one by one
+            List<RemoteRepository> repositories = new ArrayList<>();
+            for (Object repository : project.getPluginArtifactRepositories()) {
+                repositories.add(RepositoryUtils.toRepo((ArtifactRepository) repository));
+            }
+            this.remoteRepositories = List.copyOf(repositories);
+            // the plugin realm, which Maven attaches to the descriptor, depends on the
+            // repositories and on the project realm built from the build extensions
+            List<String> extensions = new ArrayList<>();
+            for (Object element : project.getBuildExtensions()) {
+                Extension extension = (Extension) element;
+                extensions.add(
+                        gav(
+                                extension.getGroupId(),
+                                extension.getArtifactId(),
+                                extension.getVersion()));
+            }
+            for (Plugin plugin : project.getBuild().getPlugins()) {
+                if (plugin.isExtensions()) {
+                    extensions.add(
+                            gav(plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion()));
+                }
+            }
+            this.scope =
+                    remoteRepositories.stream()
+                                    .map(r -> r.getId() + "=" + r.getUrl())
+                                    .collect(Collectors.joining(",", " from [", "]"))
+                            + (extensions.isEmpty()
+                                    ? ""
+                                    : " with [" + String.join(",", extensions) + "]");
+        }
+
+        /** Returns the build plugin with the specified groupId:artifactId key, or null. */
+        Plugin getBuildPlugin(String key) {
+            return buildPlugins.get(key);
+        }
+
+        /**
+         * Returns the build and pluginManagement plugins whose artifactId is one of the specified
+         * candidates, build plugins first.
+         */
+        List<Plugin> findByArtifactIds(Collection<String> candidateArtifactIds) {
+            List<Plugin> matches = new ArrayList<>();
+            for (String artifactId : candidateArtifactIds) {
+                matches.addAll(pluginsByArtifactId.getOrDefault(artifactId, List.of()));
+            }
+            return matches;
+        }
+
+        List<RemoteRepository> getRemoteRepositories() {
+            return remoteRepositories;
+        }
+
+        /**
+         * Returns the plugin repositories and the build extension realm of the project, which
+         * together with the plugin determine its realm.
+         */
+        String getScope() {
+            return scope;
+        }
+    }
+}
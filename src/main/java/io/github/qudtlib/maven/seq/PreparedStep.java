@@ -0,0 +1,187 @@
+package io.github.qudtlib.maven.seq;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * A step of a sequence whose coordinates, descriptors and configuration have been resolved, ready
+ * to be executed.
+ */
+class PreparedStep {
+    private final SeqMojo.SequenceStep step;
+    private final int index;
+    private final String executionId;
+    private Plugin plugin;
+    private PluginDescriptor pluginDescriptor;
+    private MojoDescriptor mojoDescriptor;
+    private MojoExecution mojoExecution;
+    private Xpp3Dom defaultConfiguration;
+    private Xpp3Dom mergedConfiguration;
+    private ResourceLocks locks;
+    private long timeoutNanos;
+    private long warnAfterNanos;
+    private long resolutionNanos;
+
+    /** Variables of each matrix variant, empty for a plain step */
+    private List<Map<String, String>> matrixVariables = Collections.emptyList();
+
+    private List<MojoExecution> matrixExecutions = Collections.emptyList();
+
+    /** Condition evaluated when the step is due, null if there is none or it was already decided */
+    private StepCondition condition;
+
+    /** Why the step is skipped, null if it runs */
+    private String skipReason;
+
+    /** Entry of the resolved plan the step was taken from, null if it was resolved in this run */
+    private ResolvedPlan.Entry planEntry;
+
+    PreparedStep(SeqMojo.SequenceStep step, int index, String executionId) {
+        this.step = step;
+        this.index = index;
+        this.executionId = executionId;
+    }
+
+    SeqMojo.SequenceStep getStep() {
+        return step;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    String getExecutionId() {
+        return executionId;
+    }
+
+    Plugin getPlugin() {
+        return plugin;
+    }
+
+    void setPlugin(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    ResourceLocks getLocks() {
+        return locks;
+    }
+
+    void setLocks(ResourceLocks locks) {
+        this.locks = locks;
+    }
+
+    long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    void setTimeoutNanos(long timeoutNanos) {
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    long getWarnAfterNanos() {
+        return warnAfterNanos;
+    }
+
+    void setWarnAfterNanos(long warnAfterNanos) {
+        this.warnAfterNanos = warnAfterNanos;
+    }
+
+    PluginDescriptor getPluginDescriptor() {
+        return pluginDescriptor;
+    }
+
+    void setPluginDescriptor(PluginDescriptor pluginDescriptor) {
+        this.pluginDescriptor = pluginDescriptor;
+    }
+
+    MojoDescriptor getMojoDescriptor() {
+        return mojoDescriptor;
+    }
+
+    void setMojoDescriptor(MojoDescriptor mojoDescriptor) {
+        this.mojoDescriptor = mojoDescriptor;
+    }
+
+    MojoExecution getMojoExecution() {
+        return mojoExecution;
+    }
+
+    void setMojoExecution(MojoExecution mojoExecution) {
+        this.mojoExecution = mojoExecution;
+    }
+
+    Xpp3Dom getDefaultConfiguration() {
+        return defaultConfiguration;
+    }
+
+    void setDefaultConfiguration(Xpp3Dom defaultConfiguration) {
+        this.defaultConfiguration = defaultConfiguration;
+    }
+
+    Xpp3Dom getMergedConfiguration() {
+        return mergedConfiguration;
+    }
+
+    void setMergedConfiguration(Xpp3Dom mergedConfiguration) {
+        this.mergedConfiguration = mergedConfiguration;
+    }
+
+    /** Time spent resolving descriptors and building the configuration of this step. */
+    long getResolutionNanos() {
+        return resolutionNanos;
+    }
+
+    void setResolutionNanos(long resolutionNanos) {
+        this.resolutionNanos = resolutionNanos;
+    }
+
+    boolean isMatrix() {
+        return !matrixVariables.isEmpty();
+    }
+
+    List<Map<String, String>> getMatrixVariables() {
+        return matrixVariables;
+    }
+
+    void setMatrixVariables(List<Map<String, String>> matrixVariables) {
+        this.matrixVariables = matrixVariables;
+    }
+
+    List<MojoExecution> getMatrixExecutions() {
+        return matrixExecutions;
+    }
+
+    void setMatrixExecutions(List<MojoExecution> matrixExecutions) {
+        this.matrixExecutions = matrixExecutions;
+    }
+
+    StepCondition getCondition() {
+        return condition;
+    }
+
+    void setCondition(StepCondition condition) {
+        this.condition = condition;
+    }
+
+    String getSkipReason() {
+        return skipReason;
+    }
+
+    void setSkipReason(String skipReason) {
+        this.skipReason = skipReason;
+    }
+
+    ResolvedPlan.Entry getPlanEntry() {
+        return planEntry;
+    }
+
+    void setPlanEntry(ResolvedPlan.Entry planEntry) {
+        this.planEntry = planEntry;
+    }
+}
@@ -0,0 +1,317 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * The resolved plan of a sequence: the fully qualified coordinates, execution ids and
+ * configurations of its steps. It is stored in a compact binary file, keyed by a hash of the
+ * project's build plugins and the configuration of the sequence, so that later runs with an
+ * unchanged POM skip coordinate resolution and configuration merging.
+ */
+class ResolvedPlan {
+
+    private static final int MAGIC = 0x53455150; // "SEQP"
+    private static final int FORMAT = 1;
+
+    private final String key;
+    private final List<Entry> entries;
+
+    ResolvedPlan(String key, List<Entry> entries) {
+        this.key = key;
+        this.entries = entries;
+    }
+
+    /** The resolved state of one step; unresolved steps have no coordinates. */
+    static class Entry {
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final String goal;
+        private final String executionId;
+        private final Xpp3Dom configuration;
+        private final boolean merged;
+        private final Xpp3Dom mergedConfiguration;
+
+        /**
+         * @param merged whether <code>mergedConfiguration</code> holds the configuration merged
+         *     with the mojo's defaults, which is null if it is empty
+         */
+        Entry(
+                String groupId,
+                String artifactId,
+                String version,
+                String goal,
+                String executionId,
+                Xpp3Dom configuration,
+                boolean merged,
+                Xpp3Dom mergedConfiguration) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.goal = goal;
+            this.executionId = executionId;
+            this.configuration = configuration;
+            this.merged = merged;
+            this.mergedConfiguration = mergedConfiguration;
+        }
+
+        static Entry unresolved() {
+            return new Entry(null, null, null, null, null, null, false, null);
+        }
+
+        boolean isResolved() {
+            return groupId != null;
+        }
+
+        String getGroupId() {
+            return groupId;
+        }
+
+        String getArtifactId() {
+            return artifactId;
+        }
+
+        String getVersion() {
+            return version;
+        }
+
+        String getGoal() {
+            return goal;
+        }
+
+        String getExecutionId() {
+            return executionId;
+        }
+
+        Xpp3Dom getConfiguration() {
+            return configuration;
+        }
+
+        boolean isMerged() {
+            return merged;
+        }
+
+        Xpp3Dom getMergedConfiguration() {
+            return mergedConfiguration;
+        }
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    /** Returns the entry of the step with the specified 0-based index. */
+    Entry getEntry(int index) {
+        return index < entries.size() ? entries.get(index) : Entry.unresolved();
+    }
+
+    /**
+     * Hashes everything the resolution depends on: the build and managed plugins of the project
+     * with their versions, dependencies and execution configurations, every field of the steps as
+     * injected, with properties already evaluated, and the version of this plugin. Managed plugins
+     * count because shorthand coordinates are also resolved against them.
+     */
+    static String computeKey(
+            MavenProject project, List<SeqMojo.SequenceStep> steps, String seqVersion) {
+        MessageDigest digest = UpToDateCheck.newDigest();
+        update(digest, FORMAT + ":" + seqVersion);
+        update(digest, project.getBuild().getPlugins());
+        update(digest, "pluginManagement");
+        if (project.getPluginManagement() != null) {
+            update(digest, project.getPluginManagement().getPlugins());
+        }
+        for (SeqMojo.SequenceStep step : steps) {
+            update(digest, step);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hashes the fields of a step one by one; its <code>toString()</code> would do for neither the
+     * plexus configurations nor the matrix, of which it only holds the number of variants.
+     */
+    private static void update(MessageDigest digest, SeqMojo.SequenceStep step) {
+        update(digest, "step");
+        update(digest, String.valueOf(step.getPluginCoordinates()));
+        update(digest, String.valueOf(step.getGroupId()));
+        update(digest, String.valueOf(step.getArtifactId()));
+        update(digest, String.valueOf(step.getVersion()));
+        update(digest, String.valueOf(step.getGoal()));
+        update(digest, String.valueOf(step.getExecutionId()));
+        update(digest, String.valueOf(step.getId()));
+        update(digest, String.valueOf(step.isSkip()));
+        update(digest, String.valueOf(step.getDependsOn()));
+        update(digest, String.valueOf(step.getParallelGroup()));
+        update(digest, String.valueOf(step.getInputs()));
+        update(digest, String.valueOf(step.getOutputs()));
+        update(digest, String.valueOf(step.getLocks()));
+        update(digest, String.valueOf(step.getTimeout()));
+        update(digest, String.valueOf(step.getWarnAfter()));
+        update(digest, String.valueOf(step.isFork()));
+        update(digest, String.valueOf(step.getMatrixThreads()));
+        update(digest, String.valueOf(step.getMatrixBatchSize()));
+        update(digest, String.valueOf(step.getConfiguration()));
+        update(digest, String.valueOf(ConfigurationConverter.toXpp3Dom(step.getWhen())));
+        update(digest, String.valueOf(ConfigurationConverter.toXpp3Dom(step.getMatrix())));
+    }
+
+    private static void update(MessageDigest digest, List<Plugin> plugins) {
+        for (Plugin plugin : plugins) {
+            update(digest, plugin.getKey() + ":" + plugin.getVersion());
+            update(digest, String.valueOf(plugin.getConfiguration()));
+            for (Dependency dependency : plugin.getDependencies()) {
+                update(digest, dependency.getManagementKey() + ":" + dependency.getVersion());
+            }
+            for (PluginExecution execution : plugin.getExecutions()) {
+                update(digest, execution.getId() + ":" + execution.getGoals());
+                update(digest, String.valueOf(execution.getConfiguration()));
+            }
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /** Returns the stored plan if it exists and has the key, otherwise null. */
+    static ResolvedPlan load(Path file, String key) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in =
+                new DataInputStream(
+                        new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !key.equals(in.readUTF())) {
+                return null;
+            }
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (!in.readBoolean()) {
+                    entries.add(Entry.unresolved());
+                    continue;
+                }
+                entries.add(
+                        new Entry(
+                                readString(in),
+                                readString(in),
+                                readString(in),
+                                readString(in),
+                                readString(in),
+                                readDom(in),
+                                in.readBoolean(),
+                                readDom(in)));
+            }
+            return new ResolvedPlan(key, entries);
+        } catch (IOException | RuntimeException e) {
+            // a damaged plan is just resolved again
+            return null;
+        }
+    }
+
+    void save(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out =
+                new DataOutputStream(
+                        new GZIPOutputStream(
+                                new BufferedOutputStream(Files.newOutputStream(tmp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(key);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeBoolean(entry.isResolved());
+                if (!entry.isResolved()) {
+                    continue;
+                }
+                writeString(out, entry.groupId);
+                writeString(out, entry.artifactId);
+                writeString(out, entry.version);
+                writeString(out, entry.goal);
+                writeString(out, entry.executionId);
+                writeDom(out, entry.configuration);
+                out.writeBoolean(entry.merged);
+                writeDom(out, entry.mergedConfiguration);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Writes a string of any length, or null. */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the tree in document order; unlike its XML form, this preserves all values exactly,
+     * including surrounding whitespace.
+     */
+    private static void writeDom(DataOutputStream out, Xpp3Dom dom) throws IOException {
+        out.writeBoolean(dom != null);
+        if (dom == null) {
+            return;
+        }
+        writeString(out, dom.getName());
+        writeString(out, dom.getValue());
+        String[] attributeNames = dom.getAttributeNames();
+        out.writeInt(attributeNames.length);
+        for (String attr : attributeNames) {
+            writeString(out, attr);
+            writeString(out, dom.getAttribute(attr));
+        }
+        out.writeInt(dom.getChildCount());
+        for (Xpp3Dom child : dom.getChildren()) {
+            writeDom(out, child);
+        }
+    }
+
+    private static Xpp3Dom readDom(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Xpp3Dom dom = new Xpp3Dom(readString(in));
+        dom.setValue(readString(in));
+        int attributeCount = in.readInt();
+        for (int i = 0; i < attributeCount; i++) {
+            dom.setAttribute(readString(in), readString(in));
+        }
+        int childCount = in.readInt();
+        for (int i = 0; i < childCount; i++) {
+            dom.addChild(readDom(in));
+        }
+        return dom;
+    }
+}
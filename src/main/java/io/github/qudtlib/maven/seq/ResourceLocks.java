@@ -0,0 +1,175 @@
+package io.github.qudtlib.maven.seq;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Named resources shared by all steps running in this JVM, including those of other modules in a
+ * parallel (<code>-T</code>) build. Each resource is a fair semaphore with the permit count given
+ * by the first step that declares it; a step holds one permit of each of its resources while its
+ * mojo executes. The steps holding a resource are tracked, so that a step that gives up waiting can
+ * name them.
+ */
+class ResourceLocks {
+
+    private static final Map<String, Semaphore> SEMAPHORES = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> PERMITS = new ConcurrentHashMap<>();
+    private static final Map<String, Queue<String>> HOLDERS = new ConcurrentHashMap<>();
+
+    private final SortedMap<String, Integer> resources;
+
+    private ResourceLocks(SortedMap<String, Integer> resources) {
+        this.resources = resources;
+    }
+
+    /**
+     * Parses a comma-separated list of <code>name[:permits]</code> entries. A resource without a
+     * permit count allows one step at a time.
+     */
+    static ResourceLocks parse(String locks) throws MojoExecutionException {
+        SortedMap<String, Integer> resources = new TreeMap<>();
+        if (locks != null) {
+            for (String entry : locks.split(",")) {
+                String trimmed = entry.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                int colon = trimmed.indexOf(':');
+                String name = colon < 0 ? trimmed : trimmed.substring(0, colon).trim();
+                int permits = 1;
+                if (colon >= 0) {
+                    try {
+                        permits = Integer.parseInt(trimmed.substring(colon + 1).trim());
+                    } catch (NumberFormatException e) {
+                        permits = 0;
+                    }
+                }
+                if (name.isEmpty() || permits < 1) {
+                    throw new MojoExecutionException(
+                            "Invalid lock '"
+                                    + trimmed
+                                    + "'. Expected: <name>[:<permits>] with permits >= 1");
+                }
+                resources.put(name, permits);
+            }
+        }
+        return new ResourceLocks(resources);
+    }
+
+    boolean isEmpty() {
+        return resources.isEmpty();
+    }
+
+    String getNames() {
+        return String.join(",", resources.keySet());
+    }
+
+    /**
+     * Acquires one permit of each resource, in name order so that steps sharing several resources
+     * cannot deadlock. Returns the permits of this call, which the caller must release; the same
+     * step may acquire its locks in several modules at once. The wait counts against the timeout of
+     * the step: if the permits cannot be acquired within <code>timeoutNanos</code> (0 waits without
+     * limit), the step fails with a {@link StepWatchdog.StepTimeoutException} naming the holders.
+     *
+     * @param holder identifies the step to others waiting for its resources
+     * @param limit describes the timeout in the failure message
+     */
+    Held acquire(Log log, String holder, long timeoutNanos, String limit)
+            throws MojoExecutionException {
+        long start = System.nanoTime();
+        Held held = new Held(holder);
+        try {
+            for (Map.Entry<String, Integer> resource : resources.entrySet()) {
+                Integer permits = PERMITS.putIfAbsent(resource.getKey(), resource.getValue());
+                if (permits != null && !permits.equals(resource.getValue())) {
+                    log.warn(
+                            String.format(
+                                    "Lock %s was first declared with %d permits, ignoring %d",
+                                    resource.getKey(), permits, resource.getValue()));
+                }
+                Semaphore semaphore =
+                        SEMAPHORES.computeIfAbsent(
+                                resource.getKey(),
+                                k -> new Semaphore(PERMITS.get(resource.getKey()), true));
+                // unlike tryAcquire(), a timed tryAcquire respects the fairness of the semaphore
+                if (!semaphore.tryAcquire(0, TimeUnit.SECONDS)) {
+                    log.debug(
+                            "Waiting for lock "
+                                    + resource.getKey()
+                                    + " held by "
+                                    + getHolders(resource.getKey()));
+                    if (timeoutNanos <= 0) {
+                        semaphore.acquire();
+                    } else if (!semaphore.tryAcquire(
+                            Math.max(0, start + timeoutNanos - System.nanoTime()),
+                            TimeUnit.NANOSECONDS)) {
+                        held.release();
+                        throw new StepWatchdog.StepTimeoutException(
+                                String.format(
+                                        "Step %s exceeded %s after %s waiting for lock %s, held by %s",
+                                        holder,
+                                        limit,
+                                        SeqMojo.formatDuration(
+                                                TimeUnit.NANOSECONDS.toMillis(
+                                                        System.nanoTime() - start)),
+                                        resource.getKey(),
+                                        getHolders(resource.getKey())));
+                    }
+                }
+                held.add(resource.getKey(), semaphore);
+            }
+        } catch (InterruptedException e) {
+            held.release();
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for locks " + getNames());
+        }
+        held.waitNanos = System.nanoTime() - start;
+        return held;
+    }
+
+    /** Returns the steps currently holding a permit of the resource. */
+    private static String getHolders(String resource) {
+        Queue<String> holders = HOLDERS.get(resource);
+        return holders == null || holders.isEmpty()
+                ? "no step"
+                : "step " + String.join(", ", holders);
+    }
+
+    /** Permits acquired by one call of {@link #acquire}. */
+    static final class Held {
+        private final String holder;
+        private final List<String> resources = new ArrayList<>();
+        private final List<Semaphore> semaphores = new ArrayList<>();
+        private long waitNanos;
+
+        private Held(String holder) {
+            this.holder = holder;
+        }
+
+        private synchronized void add(String resource, Semaphore semaphore) {
+            HOLDERS.computeIfAbsent(resource, k -> new ConcurrentLinkedQueue<>()).add(holder);
+            resources.add(resource);
+            semaphores.add(semaphore);
+        }
+
+        /** Returns the time spent waiting for the permits. */
+        long getWaitNanos() {
+            return waitNanos;
+        }
+
+        /** Releases the permits in reverse order; releasing twice has no effect. */
+        synchronized void release() {
+            for (int i = semaphores.size() - 1; i >= 0; i--) {
+                HOLDERS.get(resources.get(i)).remove(holder);
+                semaphores.get(i).release();
+            }
+            resources.clear();
+            semaphores.clear();
+        }
+    }
+}
@@ -1,10 +1,24 @@
 package io.github.qudtlib.maven.seq;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import org.apache.maven.RepositoryUtils;
-import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.model.PluginExecution;
@@ -16,10 +30,10 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.rtinfo.RuntimeInformation;
 import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.configuration.PlexusConfiguration;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.eclipse.aether.repository.RemoteRepository;
 
 @Mojo(name = "run", defaultPhase = LifecyclePhase.NONE, threadSafe = true)
 public class SeqMojo extends AbstractMojo {
@@ -40,6 +54,27 @@ public class SeqMojo extends AbstractMojo {
 
     @Component private PlexusContainer container;
 
+    @Component private RuntimeInformation runtimeInformation;
+
+    private PluginDescriptorCache descriptorCache;
+
+    private StepWatchdog watchdog;
+
+    /** Time budget of the sequence, or 0 */
+    private long budgetNanos;
+
+    /** System.nanoTime() at which the time budget of the sequence expires, or 0 */
+    private long sequenceDeadline;
+
+    private TimingHistory timingHistory;
+
+    private long regressionMinimumNanos;
+
+    private final List<String> regressions = new ArrayList<>();
+
+    /** Outcome of each completed step, for the <code>executed</code> condition of later steps */
+    private final Map<String, String> stepStatuses = new ConcurrentHashMap<>();
+
     @Parameter(defaultValue = "${mojoExecution.executionId}", readonly = true)
     private String mojoExecutionId;
 
@@ -50,6 +85,189 @@ public class SeqMojo extends AbstractMojo {
     @Parameter(defaultValue = "")
     private String label;
 
+    /**
+     * Maximum number of steps to run concurrently. Steps only run concurrently if they declare
+     * <code>dependsOn</code> or <code>parallelGroup</code>; otherwise each step waits for the
+     * previous one. Values below 1 use the number of available processors.
+     */
+    @Parameter(defaultValue = "0", property = "seq.threads")
+    private int threads;
+
+    /**
+     * Execute steps with declared inputs even if their inputs, plugin version and configuration are
+     * unchanged since their last successful execution
+     */
+    @Parameter(defaultValue = "false", property = "seq.force")
+    private boolean force;
+
+    /**
+     * Number of threads resolving plugin descriptors and plugin realms of later steps while earlier
+     * steps execute
+     */
+    @Parameter(defaultValue = "4", property = "seq.resolverThreads")
+    private int resolverThreads;
+
+    /**
+     * Write a performance report with wall-clock time, CPU time, allocated bytes, GC activity and
+     * resolution time of each step to target/seq-report/&lt;executionId&gt;.json and .csv
+     */
+    @Parameter(defaultValue = "false", property = "seq.report")
+    private boolean report;
+
+    /**
+     * Merge the performance reports of all sequence executions in the build into
+     * target/seq-report/reactor-summary.json and .csv of the top-level project
+     */
+    @Parameter(defaultValue = "false", property = "seq.reactorReport")
+    private boolean reactorReport;
+
+    /**
+     * Record the duration of each executed step in {@link #historyFile} and compare it with the
+     * median of its previous executions. Off by default, as the file lies outside the project and
+     * is shared by all builds on the machine.
+     */
+    @Parameter(defaultValue = "false", property = "seq.history")
+    private boolean history;
+
+    /**
+     * Append-only file holding the durations of past step executions, shared by all projects and
+     * builds
+     */
+    @Parameter(defaultValue = "${user.home}/.m2/seq-history.tsv", property = "seq.historyFile")
+    private File historyFile;
+
+    /** Number of previous executions of a step whose median is its baseline */
+    @Parameter(defaultValue = "20", property = "seq.historyWindow")
+    private int historyWindow;
+
+    /** Percentage by which a step must exceed its baseline to be reported as a regression */
+    @Parameter(defaultValue = "50", property = "seq.regressionThreshold")
+    private int regressionThreshold;
+
+    /**
+     * Minimum absolute slowdown, such as <code>1s</code>, for a step to be reported as a
+     * regression, so that short steps do not trigger on noise
+     */
+    @Parameter(defaultValue = "1s", property = "seq.regressionMinimum")
+    private String regressionMinimum;
+
+    /** Fail the build after the sequence if any step regressed */
+    @Parameter(defaultValue = "false", property = "seq.failOnRegression")
+    private boolean failOnRegression;
+
+    /**
+     * Time budget of the whole sequence, such as <code>30m</code>. A step still running when the
+     * budget is used up is interrupted and fails the build, as does a step starting afterwards.
+     */
+    @Parameter(property = "seq.timeout")
+    private String timeout;
+
+    /**
+     * JVM arguments of the worker JVMs executing forked steps, such as <code>-Xmx1g</code>. Workers
+     * are pooled per set of arguments.
+     */
+    @Parameter(property = "seq.forkJvmArgs")
+    private String forkJvmArgs;
+
+    /** Number of forked steps a worker JVM executes before it is replaced by a fresh one */
+    @Parameter(defaultValue = "20", property = "seq.forkMaxExecutions")
+    private int forkMaxExecutions;
+
+    /**
+     * Live heap, such as <code>768m</code>, above which a worker JVM is replaced by a fresh one
+     * after its current step
+     */
+    @Parameter(property = "seq.forkMaxMemory")
+    private String forkMaxMemory;
+
+    /**
+     * Capture the output of each executed step and print it as one block instead of line by line,
+     * so that steps of concurrently built modules do not interleave. The output is also written to
+     * target/seq-logs/. Maven's log output is captured by replacing the output stream of slf4j's
+     * SimpleLogger, which Maven bundles, by reflection; where that is not possible, only System.out
+     * and System.err are captured, and the fallback is logged at debug level.
+     */
+    @Parameter(defaultValue = "false", property = "seq.captureLogs")
+    private boolean captureLogs;
+
+    /**
+     * Captured output, such as <code>256k</code>, a step buffers in memory before it is appended to
+     * its log file in the background
+     */
+    @Parameter(defaultValue = "1m", property = "seq.logBufferSize")
+    private String logBufferSize;
+
+    /** Print the captured output of successful steps, rather than only a summary */
+    @Parameter(defaultValue = "false", property = "seq.printSuccessfulLogs")
+    private boolean printSuccessfulLogs;
+
+    /**
+     * Store the resolved coordinates and configurations of the steps in target/seq-plan/ and reuse
+     * them in later builds while the build plugins and the sequence are unchanged. Off by default,
+     * since the key does not cover the contents of SNAPSHOT plugins; ignored while this plugin is
+     * itself a SNAPSHOT.
+     */
+    @Parameter(defaultValue = "false", property = "seq.planCache")
+    private boolean planCache;
+
+    /** Plan stored by an earlier build, null if there is none for the current key */
+    private ResolvedPlan resolvedPlan;
+
+    private String resolvedPlanKey;
+
+    /** Set when this build resolved something the stored plan does not hold */
+    private volatile boolean resolvedPlanChanged;
+
+    /**
+     * Drop the cached descriptors of a step's plugin once no later step of the sequence uses it, so
+     * that this plugin does not keep the plugin's realm reachable. The realm is owned by Maven's
+     * plugin realm cache and stays loaded as long as Maven keeps it.
+     */
+    @Parameter(defaultValue = "false", property = "seq.releaseRealms")
+    private boolean releaseRealms;
+
+    /** Number of steps not completed yet, by the key of their plugin */
+    private final Map<String, AtomicInteger> pendingPluginUses = new ConcurrentHashMap<>();
+
+    /** Set by seq:watch, whose steps keep their executions and realms between rounds */
+    private boolean watching;
+
+    /**
+     * Keep the outputs of steps that declare inputs and outputs in a cache shared by all builds,
+     * keyed by the step's fingerprint, and restore them instead of executing a step whose
+     * fingerprint has been seen before
+     */
+    @Parameter(defaultValue = "false", property = "seq.outputCache")
+    private boolean outputCache;
+
+    @Parameter(defaultValue = "${user.home}/.m2/seq-cache", property = "seq.outputCacheDirectory")
+    private File outputCacheDirectory;
+
+    /**
+     * Size above which the least recently used entries of the output cache are evicted, in bytes or
+     * with a k, m or g suffix
+     */
+    @Parameter(defaultValue = "1g", property = "seq.outputCacheMaxSize")
+    private String outputCacheMaxSize;
+
+    /**
+     * Restore cached outputs as hard links instead of copies. Faster and without extra disk space,
+     * but a later step that modifies a restored file in place also modifies the cache entry
+     */
+    @Parameter(defaultValue = "false", property = "seq.outputCacheHardLinks")
+    private boolean outputCacheHardLinks;
+
+    /** Cache used by the current execution, null if disabled */
+    private OutputCache stepOutputCache;
+
+    /** Stream reaching the console while output is captured */
+    private PrintStream console;
+
+    private int logBufferBytes;
+
+    @Parameter(defaultValue = "${plugin}", readonly = true)
+    private PluginDescriptor seqPluginDescriptor;
+
     public String getLabel() {
         return label;
     }
@@ -58,148 +276,1670 @@ public class SeqMojo extends AbstractMojo {
         this.label = label;
     }
 
+    MavenSession getSession() {
+        return session;
+    }
+
+    BuildPluginManager getPluginManager() {
+        return pluginManager;
+    }
+
+    StepWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    Map<String, String> getStepStatuses() {
+        return stepStatuses;
+    }
+
+    String getMojoGoal() {
+        return mojoGoal;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    boolean isForce() {
+        return force;
+    }
+
+    boolean isCaptureLogs() {
+        return captureLogs;
+    }
+
+    MavenProject getProject() {
+        return project;
+    }
+
+    String getMojoExecutionId() {
+        return mojoExecutionId;
+    }
+
+    boolean isHistory() {
+        return history;
+    }
+
+    /** Whether the steps were planned from the resolved plan of an earlier build */
+    boolean isResolvedPlanLoaded() {
+        return resolvedPlan != null;
+    }
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (steps == null || steps.isEmpty()) {
             getLog().info("No nested <step> elements defined - Nothing to do.");
             return;
         }
-        int index = 0;
-        for (SequenceStep sequenceStep : steps) {
-            if (sequenceStep.getPluginCoordinates() != null
-                    && !sequenceStep.getPluginCoordinates().trim().isEmpty()) {
-                resolvePluginCoordinates(sequenceStep);
-            }
-            index++;
-            String currentExecutionId =
-                    sequenceStep.getId() != null
-                            ? sequenceStep.getId()
-                            : mojoExecutionId + "-" + index;
-
-            // Locate the plugin in the project
-            Map<String, Plugin> pluginMap = project.getBuild().getPluginsAsMap();
-            String key =
-                    String.format("%s:%s", sequenceStep.getGroupId(), sequenceStep.getArtifactId());
-            Plugin plugin = pluginMap.get(key);
-            if (plugin == null) {
-                throw new MojoExecutionException(
-                        String.format("Plugin %s is not configured in the project", key));
+        SequenceEvents.SequenceEvent sequenceEvent = new SequenceEvents.SequenceEvent();
+        sequenceEvent.begin();
+        String outcome = "FAILED";
+        try {
+            runSequence();
+            outcome = "SUCCEEDED";
+        } finally {
+            sequenceEvent.report(
+                    project.getId(), mojoExecutionId, mojoGoal, label, steps.size(), outcome);
+        }
+    }
+
+    private void runSequence() throws MojoExecutionException, MojoFailureException {
+        List<String> ids = getStepIds();
+        List<StepScheduler.Node> nodes = buildStepGraph(ids);
+        List<PreparedStep> preparedSteps = planSteps(ids, nodes, false);
+        openSequence(true);
+        AtomicInteger resolverThreadCount = new AtomicInteger();
+        ExecutorService resolver =
+                Executors.newFixedThreadPool(
+                        Math.max(1, Math.min(resolverThreads, steps.size())),
+                        r -> {
+                            Thread t =
+                                    new Thread(
+                                            r,
+                                            "seq-resolve-" + resolverThreadCount.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+        PerformanceReport performanceReport = newPerformanceReport();
+        long sequenceStart = beginRound();
+        try {
+            List<CompletableFuture<PreparedStep>> plan = new ArrayList<>();
+            for (PreparedStep preparedStep : preparedSteps) {
+                if (preparedStep.getSkipReason() != null) {
+                    plan.add(CompletableFuture.completedFuture(preparedStep));
+                    continue;
+                }
+                if (preparedStep.getCondition() != null) {
+                    // resolved by executeStep once its condition holds
+                    plan.add(null);
+                    continue;
+                }
+                plan.add(
+                        CompletableFuture.supplyAsync(
+                                () -> {
+                                    try {
+                                        return prepareStep(preparedStep, true);
+                                    } catch (MojoExecutionException e) {
+                                        throw new CompletionException(e);
+                                    }
+                                },
+                                resolver));
+            }
+            StepScheduler scheduler =
+                    new StepScheduler(
+                            threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                            getLog());
+            scheduler.run(
+                    nodes,
+                    node ->
+                            executeStep(
+                                    awaitPreparedStep(plan, preparedSteps, node.getIndex()),
+                                    scheduler,
+                                    performanceReport));
+            if (!StepScheduler.isSequential(nodes)) {
+                logCriticalPath(scheduler, nodes);
+            }
+        } finally {
+            resolver.shutdownNow();
+            endRound(performanceReport, sequenceStart);
+            closeSequence(preparedSteps);
+        }
+        if (failOnRegression && !regressions.isEmpty()) {
+            throw new MojoExecutionException(
+                    regressions.size()
+                            + " step(s) regressed against their timing history: "
+                            + String.join("; ", regressions));
+        }
+        getLog().debug("Descriptor cache: " + descriptorCache.getStatistics());
+    }
+
+    /** Returns the execution ids of the steps, in declaration order. */
+    List<String> getStepIds() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < steps.size(); i++) {
+            ids.add(getStepExecutionId(steps.get(i), i + 1));
+        }
+        return ids;
+    }
+
+    List<StepScheduler.Node> buildStepGraph(List<String> ids) throws MojoExecutionException {
+        return StepScheduler.buildGraph(ids, getStepDependencies(), getStepGroups());
+    }
+
+    /**
+     * Sets up the state shared by all rounds of a sequence: the parsed limits, the output cache
+     * and, if <code>recordHistory</code> is set and the history is enabled, the timing history.
+     */
+    void openSequence(boolean recordHistory) throws MojoExecutionException {
+        budgetNanos = ParameterValues.parseDuration(timeout, "timeout");
+        regressionMinimumNanos =
+                ParameterValues.parseDuration(regressionMinimum, "regressionMinimum");
+        logBufferBytes =
+                (int)
+                        Math.min(
+                                Integer.MAX_VALUE,
+                                ParameterValues.parseSize(logBufferSize, "logBufferSize"));
+        if (captureLogs) {
+            checkLogCapture();
+        }
+        stepOutputCache = createOutputCache();
+        timingHistory = recordHistory && history ? loadTimingHistory() : null;
+        stepStatuses.clear();
+    }
+
+    /** Fails unless the console logger of the running Maven can be captured. */
+    private void checkLogCapture() throws MojoExecutionException {
+        if (!runtimeInformation.isMavenVersion(LogCapture.MAVEN_VERSIONS)) {
+            throw new MojoExecutionException(
+                    "seq.captureLogs redirects the console logger of Maven "
+                            + LogCapture.MAVEN_VERSIONS
+                            + " and does not support Maven "
+                            + runtimeInformation.getMavenVersion());
+        }
+        try {
+            LogCapture.checkLoggerHook();
+        } catch (IllegalStateException e) {
+            throw new MojoExecutionException(e.getMessage(), e.getCause());
+        }
+    }
+
+    /** Saves the resolved plan and closes the output cache. */
+    void closeSequence(List<PreparedStep> preparedSteps) {
+        saveResolvedPlan(preparedSteps);
+        closeOutputCache();
+    }
+
+    PerformanceReport newPerformanceReport() {
+        return new PerformanceReport(project.getId(), mojoExecutionId, label);
+    }
+
+    /**
+     * Starts a round of step executions: installs the log capture, starts the sequence timeout and
+     * the watchdog. Returns the start time of the round.
+     */
+    long beginRound() {
+        regressions.clear();
+        long start = System.nanoTime();
+        console = captureLogs ? LogCapture.install() : null;
+        sequenceDeadline = budgetNanos > 0 ? start + budgetNanos : 0;
+        watchdog =
+                new StepWatchdog(
+                        Path.of(
+                                project.getBuild().getDirectory(),
+                                "seq-dumps",
+                                toFileName(mojoExecutionId)),
+                        getLog());
+        return start;
+    }
+
+    /** Ends a round started at <code>start</code> and writes its report and timing history. */
+    void endRound(PerformanceReport performanceReport, long start) {
+        if (captureLogs) {
+            LogCapture.uninstall();
+        }
+        watchdog.close();
+        performanceReport.setWallNanos(System.nanoTime() - start);
+        writeReport(performanceReport);
+        saveTimingHistory();
+    }
+
+    /**
+     * Planning phase: validates the coordinates and conditions of all steps before any step runs,
+     * taking them from the resolved plan of an earlier build where possible. Descriptors and plugin
+     * realms are resolved later, in the background while the first steps execute.
+     *
+     * @param nodes the step graph, or null if the steps run in declaration order
+     * @param deferConditions whether conditions on properties alone are evaluated when the step
+     *     runs instead, as they are for steps run in several projects
+     */
+    List<PreparedStep> planSteps(
+            List<String> ids, List<StepScheduler.Node> nodes, boolean deferConditions)
+            throws MojoExecutionException {
+        descriptorCache = PluginDescriptorCache.forSession(session);
+        loadResolvedPlan();
+        List<PreparedStep> preparedSteps = new ArrayList<>();
+        for (int i = 0; i < steps.size(); i++) {
+            SequenceStep sequenceStep = steps.get(i);
+            PreparedStep preparedStep = new PreparedStep(sequenceStep, i + 1, ids.get(i));
+            preparedSteps.add(preparedStep);
+            // skipped steps are neither validated nor resolved
+            if (sequenceStep.isSkip()) {
+                preparedStep.setSkipReason("skip is set");
+                continue;
+            }
+            StepCondition condition =
+                    StepCondition.parse(
+                            sequenceStep.getWhen(),
+                            ids.get(i),
+                            nodes == null
+                                    ? ids.subList(0, i)
+                                    : StepScheduler.getUpstreamIds(nodes.get(i)));
+            if (condition != null && condition.isPropertiesOnly() && !deferConditions) {
+                preparedStep.setSkipReason(
+                        condition.evaluate(
+                                project.getBasedir().toPath(),
+                                name -> getProperty(project, name),
+                                id -> null));
+                if (preparedStep.getSkipReason() != null) {
+                    continue;
+                }
+            } else {
+                preparedStep.setCondition(condition);
+            }
+            preparedStep.setPlugin(resolveStep(preparedStep));
+            preparedStep.setLocks(ResourceLocks.parse(sequenceStep.getLocks()));
+            preparedStep.setTimeoutNanos(
+                    ParameterValues.parseDuration(sequenceStep.getTimeout(), "timeout"));
+            preparedStep.setWarnAfterNanos(
+                    ParameterValues.parseDuration(sequenceStep.getWarnAfter(), "warnAfter"));
+            preparedStep.setMatrixVariables(parseMatrix(sequenceStep, ids.get(i)));
+        }
+        pendingPluginUses.clear();
+        for (PreparedStep preparedStep : preparedSteps) {
+            if (preparedStep.getSkipReason() == null) {
+                pendingPluginUses
+                        .computeIfAbsent(
+                                preparedStep.getPlugin().getKey(), k -> new AtomicInteger())
+                        .incrementAndGet();
             }
-            getLog().debug("Found plugin: " + plugin);
+        }
+        return preparedSteps;
+    }
+
+    /**
+     * Takes the coordinates and configuration of the step from the resolved plan if it holds them
+     * and the plugin is still configured, otherwise validates the step.
+     */
+    private Plugin resolveStep(PreparedStep preparedStep) throws MojoExecutionException {
+        SequenceEvents.StepResolutionEvent event = new SequenceEvents.StepResolutionEvent();
+        event.begin();
+        SequenceStep sequenceStep = preparedStep.getStep();
+        ResolvedPlan.Entry entry =
+                resolvedPlan != null ? resolvedPlan.getEntry(preparedStep.getIndex() - 1) : null;
+        if (entry != null && entry.isResolved()) {
+            Plugin plugin =
+                    descriptorCache
+                            .getProjectIndex(project)
+                            .getBuildPlugin(entry.getGroupId() + ":" + entry.getArtifactId());
+            if (plugin != null) {
+                sequenceStep.setPluginCoordinates(null);
+                sequenceStep.setGroupId(entry.getGroupId());
+                sequenceStep.setArtifactId(entry.getArtifactId());
+                sequenceStep.setVersion(entry.getVersion());
+                sequenceStep.setGoal(entry.getGoal());
+                sequenceStep.setExecutionId(entry.getExecutionId());
+                sequenceStep.setConfiguration(entry.getConfiguration());
+                preparedStep.setPlanEntry(entry);
+                reportResolution(event, preparedStep, "coordinates", true);
+                return plugin;
+            }
+        }
+        resolvedPlanChanged = true;
+        Plugin plugin = validateStep(sequenceStep);
+        if (!isPresent(sequenceStep.getVersion())) {
+            sequenceStep.setVersion(plugin.getVersion());
+        }
+        reportResolution(event, preparedStep, "coordinates", false);
+        return plugin;
+    }
+
+    private static void reportResolution(
+            SequenceEvents.StepResolutionEvent event,
+            PreparedStep preparedStep,
+            String phase,
+            boolean resolvedPlan) {
+        SequenceStep sequenceStep = preparedStep.getStep();
+        event.report(
+                preparedStep.getIndex(),
+                preparedStep.getExecutionId(),
+                phase,
+                sequenceStep.getGroupId()
+                        + ":"
+                        + sequenceStep.getArtifactId()
+                        + ":"
+                        + sequenceStep.getVersion()
+                        + ":"
+                        + sequenceStep.getGoal(),
+                resolvedPlan);
+    }
+
+    /**
+     * Resolves the coordinates of the step and checks that its plugin is configured in the project.
+     * Performs no artifact resolution, so invalid sequences fail immediately.
+     */
+    private Plugin validateStep(SequenceStep sequenceStep) throws MojoExecutionException {
+        if (sequenceStep.getPluginCoordinates() != null
+                && !sequenceStep.getPluginCoordinates().trim().isEmpty()) {
+            resolvePluginCoordinates(sequenceStep);
+        }
+        // Locate the plugin in the project
+        String key =
+                String.format("%s:%s", sequenceStep.getGroupId(), sequenceStep.getArtifactId());
+        Plugin plugin = descriptorCache.getProjectIndex(project).getBuildPlugin(key);
+        if (plugin == null) {
+            throw new MojoExecutionException(
+                    String.format("Plugin %s is not configured in the project", key));
+        }
+        if (!isPresent(sequenceStep.getGoal())) {
+            throw new MojoExecutionException(
+                    String.format("No goal specified for plugin %s in sequence step", key));
+        }
+        getLog().debug("Found plugin: " + plugin);
+        return plugin;
+    }
 
-            // Get remote repositories
-            List<RemoteRepository> remoteRepos =
-                    ((List<ArtifactRepository>) project.getPluginArtifactRepositories())
-                            .stream().map(RepositoryUtils::toRepo).collect(Collectors.toList());
+    /**
+     * Returns the prepared step with the specified 1-based index, waiting for its resolution if
+     * necessary. Fails as soon as the resolution of any step has failed, even if that step has not
+     * had its turn yet. Steps with a deferred condition are returned unresolved.
+     */
+    private PreparedStep awaitPreparedStep(
+            List<CompletableFuture<PreparedStep>> plan, List<PreparedStep> preparedSteps, int index)
+            throws MojoExecutionException {
+        try {
+            for (CompletableFuture<PreparedStep> future : plan) {
+                if (future != null && future.isCompletedExceptionally()) {
+                    future.join();
+                }
+            }
+            CompletableFuture<PreparedStep> future = plan.get(index - 1);
+            return future != null ? future.join() : preparedSteps.get(index - 1);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof MojoExecutionException) {
+                throw (MojoExecutionException) e.getCause();
+            }
+            throw new MojoExecutionException("Failed to prepare sequence step", e.getCause());
+        }
+    }
 
-            // Resolve plugin descriptor
-            PluginDescriptor pluginDescriptor;
+    /**
+     * Returns the time limit of a step that starts now: the earlier of its own timeout and the end
+     * of the sequence time budget. Fails the step if the budget is used up already.
+     */
+    StepLimit getStepLimit(long timeoutNanos, String stepId)
+            throws StepWatchdog.StepTimeoutException {
+        long now = System.nanoTime();
+        String description = "its timeout of " + formatDuration(timeoutNanos / 1_000_000);
+        if (sequenceDeadline != 0) {
+            long remainingNanos = sequenceDeadline - now;
+            if (remainingNanos <= 0) {
+                throw new StepWatchdog.StepTimeoutException(
+                        String.format(
+                                "The sequence time budget of %s was used up before step %s started",
+                                timeout.trim(), stepId));
+            }
+            if (timeoutNanos <= 0 || remainingNanos < timeoutNanos) {
+                timeoutNanos = remainingNanos;
+                description = "the sequence time budget of " + timeout.trim();
+            }
+        }
+        return new StepLimit(timeoutNanos > 0 ? now + timeoutNanos : 0, description);
+    }
+
+    /** Time limit of a step, which covers waiting for its locks as well as executing it. */
+    static final class StepLimit {
+        /** System.nanoTime() at which the step must have completed, or 0 */
+        private final long deadline;
+
+        private final String description;
+
+        private StepLimit(long deadline, String description) {
+            this.deadline = deadline;
+            this.description = description;
+        }
+
+        /** Returns the time left, at least 1ns, or 0 if the step has no limit. */
+        long getRemainingNanos() {
+            return deadline == 0 ? 0 : Math.max(1, deadline - System.nanoTime());
+        }
+
+        /** Describes the limit in the failure message of a step exceeding it */
+        String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * Releases the locks and execution permits of a step. Those of a timed-out step are held until
+     * its interrupted thread has actually ended, so that it cannot overlap with the next holder.
+     *
+     * @param permits the execution permits of the step, null if it has none
+     */
+    void releaseLocks(
+            ResourceLocks.Held heldLocks,
+            StepScheduler.Permits permits,
+            StepWatchdog.StepTimeoutException timedOut,
+            String stepId) {
+        if (heldLocks == null && permits == null) {
+            return;
+        }
+        Runnable release =
+                () -> {
+                    if (heldLocks != null) {
+                        heldLocks.release();
+                    }
+                    if (permits != null) {
+                        permits.release();
+                    }
+                };
+        if (timedOut == null) {
+            release.run();
+            return;
+        }
+        if (timedOut.isStepRunning()) {
+            getLog().debug(
+                            "Step "
+                                    + stepId
+                                    + " keeps its locks until its interrupted thread has ended");
+        }
+        timedOut.whenStepEnds(release);
+    }
+
+    /**
+     * Resolves the descriptors of the step, prefetches its plugin realm if <code>loadRealm</code>
+     * is set and builds its mojo execution with the merged configuration.
+     */
+    PreparedStep prepareStep(PreparedStep preparedStep, boolean loadRealm)
+            throws MojoExecutionException {
+        long start = System.nanoTime();
+        SequenceEvents.StepResolutionEvent descriptorEvent =
+                new SequenceEvents.StepResolutionEvent();
+        descriptorEvent.begin();
+        SequenceStep sequenceStep = preparedStep.getStep();
+        String currentExecutionId = preparedStep.getExecutionId();
+        // Resolve plugin descriptor
+        PluginDescriptor pluginDescriptor =
+                descriptorCache.getPluginDescriptor(
+                        preparedStep.getPlugin(),
+                        descriptorCache.getProjectIndex(project),
+                        session,
+                        mavenPluginManager);
+        getLog().debug("Plugin descriptor: " + pluginDescriptor.getId());
+
+        // Get mojo descriptor
+        MojoDescriptor mojoDescriptor =
+                descriptorCache.getMojoDescriptor(pluginDescriptor, sequenceStep.getGoal());
+        getLog().debug("Mojo descriptor: " + mojoDescriptor.getGoal());
+
+        // Load the plugin and its dependencies now rather than on the critical path
+        if (loadRealm) {
             try {
-                pluginDescriptor =
-                        mavenPluginManager.getPluginDescriptor(
-                                plugin, remoteRepos, session.getRepositorySession());
-                getLog().debug("Plugin descriptor: " + pluginDescriptor.getId());
-            } catch (Exception e) {
+                pluginManager.getPluginRealm(session, pluginDescriptor);
+            } catch (PluginResolutionException | PluginManagerException e) {
                 throw new MojoExecutionException(
-                        "Failed to resolve plugin descriptor for " + key, e);
+                        "Failed to set up plugin realm for " + pluginDescriptor.getId(), e);
             }
+        }
 
-            // Get mojo descriptor
-            MojoDescriptor mojoDescriptor;
-            try {
-                mojoDescriptor = pluginDescriptor.getMojo(sequenceStep.getGoal());
-                if (mojoDescriptor == null) {
-                    throw new MojoNotFoundException(sequenceStep.getGoal(), pluginDescriptor);
+        reportResolution(descriptorEvent, preparedStep, "descriptor", false);
+
+        SequenceEvents.StepResolutionEvent configurationEvent =
+                new SequenceEvents.StepResolutionEvent();
+        configurationEvent.begin();
+        // Create MojoExecution
+        MojoExecution mojoExecution = new MojoExecution(mojoDescriptor, currentExecutionId);
+        // Get the default configuration from the MojoDescriptor (shared, converted once)
+        Xpp3Dom defaultConfig = descriptorCache.getDefaultConfiguration(mojoDescriptor);
+
+        // Get the user-provided configuration
+        Xpp3Dom userConfig = sequenceStep.getConfiguration();
+
+        // Merge default and user configurations, leaving both unchanged, unless the resolved plan
+        // holds the result
+        ResolvedPlan.Entry planEntry = preparedStep.getPlanEntry();
+        Xpp3Dom mergedConfig;
+        boolean mergedFromPlan =
+                planEntry != null && planEntry.isMerged() && !preparedStep.isMatrix();
+        if (mergedFromPlan) {
+            mergedConfig = planEntry.getMergedConfiguration();
+        } else {
+            mergedConfig = ConfigurationConverter.mergeWithDefaults(userConfig, defaultConfig);
+            if (isPlanCacheable(preparedStep)) {
+                resolvedPlanChanged = true;
+            }
+        }
+
+        // Apply the merged configuration
+        if (mergedConfig != null && mergedConfig.getChildCount() > 0) {
+            getLog().debug(
+                            "Applying merged configuration for "
+                                    + currentExecutionId
+                                    + ": "
+                                    + mergedConfig.toString());
+            mojoExecution.setConfiguration(mergedConfig);
+        } else {
+            getLog().debug(
+                            "No configuration provided for "
+                                    + currentExecutionId
+                                    + "; using default mojo configuration");
+        }
+        if (preparedStep.isMatrix()) {
+            // one execution per variant, all sharing the descriptors and the default configuration
+            List<MojoExecution> variantExecutions = new ArrayList<>();
+            List<Map<String, String>> variants = preparedStep.getMatrixVariables();
+            for (int i = 0; i < variants.size(); i++) {
+                MojoExecution variantExecution =
+                        new MojoExecution(mojoDescriptor, currentExecutionId + "[" + (i + 1) + "]");
+                Xpp3Dom variantConfig =
+                        ConfigurationConverter.mergeWithDefaults(
+                                ConfigurationConverter.substitute(userConfig, variants.get(i)),
+                                defaultConfig);
+                if (variantConfig != null && variantConfig.getChildCount() > 0) {
+                    variantExecution.setConfiguration(variantConfig);
                 }
-                getLog().debug("Mojo descriptor: " + mojoDescriptor.getGoal());
-            } catch (Exception e) {
-                throw new MojoExecutionException(
-                        "Failed to get mojo descriptor for " + sequenceStep.getGoal(), e);
-            }
-
-            // Create MojoExecution
-            MojoExecution mojoExecution = new MojoExecution(mojoDescriptor, currentExecutionId);
-            // Get the default configuration from the MojoDescriptor
-            Xpp3Dom defaultConfig =
-                    ConfigurationConverter.toXpp3Dom(mojoDescriptor.getMojoConfiguration());
-
-            // Get the user-provided configuration
-            Xpp3Dom userConfig = sequenceStep.getConfiguration();
-
-            // Merge default and user configurations
-            Xpp3Dom mergedConfig =
-                    defaultConfig != null
-                            ? Xpp3Dom.mergeXpp3Dom(
-                                    userConfig,
-                                    defaultConfig) // do normal merge, not profile-style merge
-                            : userConfig;
-
-            // Apply the merged configuration
-            if (mergedConfig != null && mergedConfig.getChildCount() > 0) {
-                getLog().debug(
-                                "Applying merged configuration for "
-                                        + currentExecutionId
-                                        + ": "
-                                        + mergedConfig.toString());
-                mojoExecution.setConfiguration(mergedConfig);
+                variantExecutions.add(variantExecution);
+            }
+            preparedStep.setMatrixExecutions(variantExecutions);
+        }
+        reportResolution(configurationEvent, preparedStep, "configuration", mergedFromPlan);
+        preparedStep.setPluginDescriptor(pluginDescriptor);
+        preparedStep.setMojoDescriptor(mojoDescriptor);
+        preparedStep.setMojoExecution(mojoExecution);
+        preparedStep.setDefaultConfiguration(defaultConfig);
+        preparedStep.setMergedConfiguration(mergedConfig);
+        preparedStep.setResolutionNanos(System.nanoTime() - start);
+        return preparedStep;
+    }
+
+    void executeStep(
+            PreparedStep preparedStep, StepScheduler scheduler, PerformanceReport performanceReport)
+            throws MojoExecutionException {
+        SequenceStep sequenceStep = preparedStep.getStep();
+        int index = preparedStep.getIndex();
+        String currentExecutionId = preparedStep.getExecutionId();
+        if (preparedStep.getSkipReason() == null && preparedStep.getCondition() != null) {
+            preparedStep.setSkipReason(
+                    preparedStep
+                            .getCondition()
+                            .evaluate(
+                                    project.getBasedir().toPath(),
+                                    name -> getProperty(project, name),
+                                    stepStatuses::get));
+            if (preparedStep.getSkipReason() == null) {
+                prepareStep(preparedStep, true);
+            }
+        }
+        if (preparedStep.getSkipReason() != null) {
+            skipStep(preparedStep, performanceReport);
+            return;
+        }
+        PluginDescriptor pluginDescriptor = preparedStep.getPluginDescriptor();
+        StepMetrics metrics =
+                new StepMetrics(
+                        index,
+                        currentExecutionId,
+                        pluginDescriptor.getId() + ":" + sequenceStep.getGoal());
+        metrics.setResolutionNanos(preparedStep.getResolutionNanos());
+        performanceReport.add(metrics);
+        SequenceEvents.StepExecutionEvent stepEvent = new SequenceEvents.StepExecutionEvent();
+        stepEvent.begin();
+        MojoExecution mojoExecution = preparedStep.getMojoExecution();
+        Xpp3Dom mergedConfig = preparedStep.getMergedConfiguration();
+        UpToDateCheck upToDateCheck = newUpToDateCheck(preparedStep, project);
+        boolean upToDate = isUpToDate(upToDateCheck, preparedStep, currentExecutionId);
+        String cacheKey = upToDate ? null : getOutputCacheKey(sequenceStep, upToDateCheck);
+        String formattedLabel = formatLabel();
+        getLog().info(
+                        String.format(
+                                "---- %s: %s%sstep %d (%s) %s starting",
+                                mojoGoal,
+                                formattedLabel,
+                                upToDate ? "UP-TO-DATE " : "",
+                                index,
+                                currentExecutionId,
+                                formatCoordinates(
+                                        sequenceStep, preparedStep.getDefaultConfiguration())));
+        boolean execute = !upToDate;
+        // forked steps run in their own JVM
+        StepScheduler.Permits permits =
+                execute
+                        ? scheduler.beginExecution(
+                                currentExecutionId,
+                                preparedStep.getMojoDescriptor().getFullGoalName(),
+                                sequenceStep.isFork()
+                                        || preparedStep.getMojoDescriptor().isThreadSafe())
+                        : null;
+        ResourceLocks locks = preparedStep.getLocks();
+        ResourceLocks.Held heldLocks = null;
+        long startTime = System.nanoTime();
+        LogCapture.StepLog stepLog =
+                execute && captureLogs ? openStepLog(project, currentExecutionId) : null;
+        if (stepLog != null) {
+            LogCapture.begin(stepLog);
+        }
+        boolean succeeded = false;
+        StepWatchdog.StepTimeoutException timedOut = null;
+
+        // Execute the mojo using the pluginManager
+        try {
+            if (upToDate) {
+                metrics.setStatus("UP_TO_DATE");
             } else {
-                getLog().debug(
-                                "No configuration provided for "
+                metrics.setStatus("FAILED");
+                StepLimit stepLimit =
+                        getStepLimit(preparedStep.getTimeoutNanos(), currentExecutionId);
+                if (!locks.isEmpty()) {
+                    heldLocks =
+                            locks.acquire(
+                                    getLog(),
+                                    currentExecutionId,
+                                    stepLimit.getRemainingNanos(),
+                                    stepLimit.getDescription());
+                    metrics.setWaitNanos(heldLocks.getWaitNanos());
+                }
+                startTime = System.nanoTime();
+                if (cacheKey != null
+                        && !force
+                        && restoreOutputs(
+                                cacheKey,
+                                project.getBasedir().toPath(),
+                                currentExecutionId,
+                                metrics)) {
+                    metrics.setStatus("FROM_CACHE");
+                } else {
+                    watchdog.run(
+                            currentExecutionId,
+                            stepLimit.getRemainingNanos(),
+                            stepLimit.getDescription(),
+                            preparedStep.getWarnAfterNanos(),
+                            () -> {
+                                metrics.begin();
+                                try {
+                                    if (preparedStep.isMatrix()) {
+                                        executeMatrix(preparedStep);
+                                    } else {
+                                        executeMojo(preparedStep, mojoExecution);
+                                    }
+                                } finally {
+                                    metrics.end();
+                                }
+                                return null;
+                            });
+                    metrics.setStatus("EXECUTED");
+                }
+            }
+            succeeded = true;
+        } catch (StepWatchdog.StepTimeoutException e) {
+            metrics.setStatus("TIMED_OUT");
+            getLog().error(e.getMessage());
+            timedOut = e;
+            throw e;
+        } catch (PluginParameterException e) {
+            getLog().error(
+                            "Parameter injection failed for "
+                                    + sequenceStep.getGoal()
+                                    + ": "
+                                    + e.getMessage());
+            throw new MojoExecutionException("Parameter injection failed", e);
+        } catch (Exception e) {
+            getLog().error(
+                            "Execution failed for "
+                                    + sequenceStep.getGoal()
+                                    + ": "
+                                    + e.getMessage());
+            throw new MojoExecutionException(
+                    "Failed to execute "
+                            + sequenceStep.getArtifactId()
+                            + ":"
+                            + sequenceStep.getGoal(),
+                    e);
+        } finally {
+            releaseLocks(heldLocks, permits, timedOut, currentExecutionId);
+            stepEvent.report(
+                    project.getId(),
+                    index,
+                    currentExecutionId,
+                    metrics.getCoordinates(),
+                    metrics.getStatus());
+            if (stepLog != null) {
+                LogCapture.end();
+                closeStepLog(stepLog, succeeded, index, currentExecutionId);
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        long duration = elapsedNanos / 1_000_000;
+        if (upToDateCheck != null && !upToDate) {
+            try {
+                upToDateCheck.recordSuccess();
+            } catch (IOException e) {
+                getLog().warn(
+                                "Could not record the state of step "
                                         + currentExecutionId
-                                        + "; using default mojo configuration");
+                                        + ": "
+                                        + e.getMessage());
             }
-            String formattedLabel =
-                    getLabel() != null && !getLabel().isEmpty() ? "'" + getLabel() + "' " : "";
-            getLog().info(
+        }
+        boolean executed = metrics.getStatus().equals("EXECUTED");
+        if (cacheKey != null && executed) {
+            storeOutputs(cacheKey, project.getBasedir().toPath(), sequenceStep, currentExecutionId);
+        }
+        StringBuilder details = new StringBuilder();
+        if (execute && !locks.isEmpty()) {
+            details.append(
+                    String.format(
+                            " (waited %s for %s)",
+                            formatDuration(metrics.getWaitNanos() / 1_000_000), locks.getNames()));
+        }
+        if (executed && timingHistory != null) {
+            details.append(compareWithHistory(currentExecutionId, metrics, elapsedNanos));
+        }
+        if (stepLog != null) {
+            details.append(
+                    String.format(
+                            " [output: %s in %s]",
+                            stepLog.getSummary(),
+                            project.getBasedir().toPath().relativize(stepLog.getFile())));
+        }
+        stepStatuses.put(currentExecutionId, metrics.getStatus());
+        getLog().info(
+                        String.format(
+                                "---- %s: %sstep %d (%s) completed in %s%s",
+                                mojoGoal,
+                                formattedLabel,
+                                index,
+                                currentExecutionId,
+                                formatDuration(duration),
+                                details));
+        if (executed) {
+            getLog().debug(
                             String.format(
-                                    "---- %s: %s%sstep %d (%s) %s starting",
-                                    mojoGoal,
-                                    formattedLabel,
-                                    sequenceStep.isSkip() ? "SKIPPING " : "",
-                                    index,
+                                    "Step %s: heap %d MB -> %d MB, peak %d MB; metaspace %d MB -> %d MB",
                                     currentExecutionId,
-                                    formatCoordinates(sequenceStep, defaultConfig)));
-            long startTime = System.currentTimeMillis();
+                                    metrics.getHeapBeforeBytes() >> 20,
+                                    metrics.getHeapAfterBytes() >> 20,
+                                    metrics.getHeapPeakBytes() >> 20,
+                                    metrics.getMetaspaceBeforeBytes() >> 20,
+                                    metrics.getMetaspaceAfterBytes() >> 20));
+        }
+        releaseStep(preparedStep);
+    }
+
+    /**
+     * Drops the references of a completed step to its descriptors, mojo executions and merged
+     * configurations, so that they can be collected while later steps run. If requested and no
+     * later step uses the plugin, also drops the cached descriptors of the plugin, through which
+     * this plugin would keep the plugin's realm reachable; the realm itself belongs to Maven.
+     */
+    void releaseStep(PreparedStep preparedStep) {
+        if (watching) {
+            return;
+        }
+        PluginDescriptor pluginDescriptor = preparedStep.getPluginDescriptor();
+        if (usesPlanCache()) {
+            // keeps only what the resolved plan stores
+            preparedStep.setPlanEntry(toPlanEntry(preparedStep, ResolvedPlan.Entry.unresolved()));
+        }
+        preparedStep.setMojoExecution(null);
+        preparedStep.setMatrixExecutions(Collections.emptyList());
+        preparedStep.setMergedConfiguration(null);
+        preparedStep.setDefaultConfiguration(null);
+        preparedStep.setMojoDescriptor(null);
+        preparedStep.setPluginDescriptor(null);
+        Plugin plugin = preparedStep.getPlugin();
+        AtomicInteger pendingUses = pendingPluginUses.get(plugin.getKey());
+        if (pendingUses == null || pendingUses.decrementAndGet() > 0) {
+            return;
+        }
+        if (releaseRealms && pluginDescriptor != null) {
+            descriptorCache.release(pluginDescriptor);
+            getLog().debug("Released the descriptors of " + pluginDescriptor.getId());
+        }
+    }
+
+    LogCapture.StepLog openStepLog(MavenProject module, String stepId) {
+        Path file =
+                Path.of(module.getBuild().getDirectory(), "seq-logs", toFileName(mojoExecutionId))
+                        .resolve(toFileName(stepId) + ".log");
+        try {
+            return new LogCapture.StepLog(file, logBufferBytes);
+        } catch (IOException e) {
+            getLog().warn("Could not capture the output of step " + stepId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Completes the log file of the step and prints the captured output as one block if the step
+     * failed or {@link #printSuccessfulLogs} is set.
+     */
+    void closeStepLog(LogCapture.StepLog stepLog, boolean succeeded, int index, String stepId) {
+        boolean print = !succeeded || printSuccessfulLogs;
+        try {
+            stepLog.close();
+            if (print) {
+                String header =
+                        String.format(
+                                "[%s] ---- %s: %soutput of %sstep %d (%s), %s:%n",
+                                succeeded ? "INFO" : "ERROR",
+                                mojoGoal,
+                                formatLabel(),
+                                succeeded ? "" : "failed ",
+                                index,
+                                stepId,
+                                stepLog.getSummary());
+                LogCapture.replay(
+                        console, header.getBytes(Charset.defaultCharset()), stepLog.getFile());
+            }
+        } catch (IOException e) {
+            getLog().warn("Could not write the output of step " + stepId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Logs and reports a step that is skipped by its <code>skip</code> flag or its <code>when
+     * </code> condition. Its plugin may not have been resolved.
+     */
+    void skipStep(PreparedStep preparedStep, PerformanceReport performanceReport) {
+        String coordinates = getSkippedCoordinates(preparedStep.getStep());
+        StepMetrics metrics =
+                new StepMetrics(
+                        preparedStep.getIndex(), preparedStep.getExecutionId(), coordinates);
+        metrics.setStatus("SKIPPED");
+        performanceReport.add(metrics);
+        stepStatuses.put(preparedStep.getExecutionId(), metrics.getStatus());
+        SequenceEvents.stepSkipped(
+                preparedStep.getIndex(),
+                preparedStep.getExecutionId(),
+                coordinates,
+                preparedStep.getSkipReason());
+        getLog().info(
+                        String.format(
+                                "---- %s: %sSKIPPING step %d (%s) %s: %s",
+                                mojoGoal,
+                                formatLabel(),
+                                preparedStep.getIndex(),
+                                preparedStep.getExecutionId(),
+                                coordinates,
+                                preparedStep.getSkipReason()));
+        if (preparedStep.getPlugin() != null) {
+            // skipped by a deferred condition
+            releaseStep(preparedStep);
+        }
+    }
+
+    /**
+     * Returns the coordinates of a skipped step as declared, since its plugin may not be loaded.
+     */
+    String getSkippedCoordinates(SequenceStep sequenceStep) {
+        return isPresent(sequenceStep.getPluginCoordinates())
+                ? sequenceStep.getPluginCoordinates().trim()
+                : sequenceStep.getGroupId()
+                        + ":"
+                        + sequenceStep.getArtifactId()
+                        + ":"
+                        + sequenceStep.getGoal();
+    }
+
+    /**
+     * Looks up a property of the build: user properties, then properties of the module and system
+     * properties.
+     */
+    String getProperty(MavenProject module, String name) {
+        String value = session.getUserProperties().getProperty(name);
+        if (value == null) {
+            value = module.getProperties().getProperty(name);
+        }
+        if (value == null) {
+            value = session.getSystemProperties().getProperty(name);
+        }
+        return value;
+    }
+
+    /**
+     * Parses the matrix of the step into the variables of each variant. Returns an empty list for a
+     * step without matrix.
+     */
+    private List<Map<String, String>> parseMatrix(SequenceStep sequenceStep, String stepId)
+            throws MojoExecutionException {
+        PlexusConfiguration matrix = sequenceStep.getMatrix();
+        if (matrix == null) {
+            return Collections.emptyList();
+        }
+        List<Map<String, String>> variants = new ArrayList<>();
+        for (PlexusConfiguration variant : matrix.getChildren()) {
+            Map<String, String> variables = new LinkedHashMap<>();
+            for (PlexusConfiguration variable : variant.getChildren()) {
+                variables.put(variable.getName(), variable.getValue(""));
+            }
+            if (variables.isEmpty()) {
+                throw new MojoExecutionException(
+                        String.format(
+                                "Matrix variant %d of step %s defines no variables",
+                                variants.size() + 1, stepId));
+            }
+            variants.add(variables);
+        }
+        if (variants.isEmpty()) {
+            throw new MojoExecutionException("The matrix of step " + stepId + " has no variants");
+        }
+        return variants;
+    }
+
+    /**
+     * Executes the variants of a matrix step in batches of <code>matrixBatchSize</code>, with up to
+     * <code>matrixThreads</code> variants running concurrently, and logs one summary line. Variants
+     * of a failed batch complete, but no further batches start. If the step is interrupted, for
+     * example by its timeout, the running variants are interrupted too, and the step only returns
+     * once the last of them has ended, so that its locks are not released while a variant runs.
+     */
+    private void executeMatrix(PreparedStep preparedStep) throws MojoExecutionException {
+        SequenceStep sequenceStep = preparedStep.getStep();
+        String stepId = preparedStep.getExecutionId();
+        List<MojoExecution> variants = preparedStep.getMatrixExecutions();
+        List<Map<String, String>> variables = preparedStep.getMatrixVariables();
+        int count = variants.size();
+        int batchSize =
+                sequenceStep.getMatrixBatchSize() > 0 ? sequenceStep.getMatrixBatchSize() : count;
+        int matrixThreads = Math.max(1, Math.min(sequenceStep.getMatrixThreads(), batchSize));
+        if (matrixThreads > 1
+                && !sequenceStep.isFork()
+                && !preparedStep.getMojoDescriptor().isThreadSafe()) {
+            // variants share the mojo's plugin realm and its static state
+            getLog().warn(
+                            String.format(
+                                    "Step %s runs its variants one at a time instead of %d concurrently: %s is not marked thread-safe",
+                                    stepId,
+                                    matrixThreads,
+                                    preparedStep.getMojoDescriptor().getFullGoalName()));
+            matrixThreads = 1;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor =
+                matrixThreads > 1
+                        ? Executors.newFixedThreadPool(
+                                matrixThreads,
+                                r -> {
+                                    Thread t =
+                                            new Thread(
+                                                    r,
+                                                    "seq-matrix-"
+                                                            + stepId
+                                                            + "-"
+                                                            + threadCount.incrementAndGet());
+                                    t.setDaemon(true);
+                                    return t;
+                                })
+                        : null;
+        long[] variantNanos = new long[count];
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        Exception[] firstFailure = new Exception[1];
+        int started = 0;
+        long start = System.nanoTime();
+        try {
+            while (started < count && failures.isEmpty()) {
+                int end = Math.min(count, started + batchSize);
+                List<Future<?>> batch = new ArrayList<>();
+                for (int i = started; i < end; i++) {
+                    int variant = i;
+                    Runnable task =
+                            () -> {
+                                long variantStart = System.nanoTime();
+                                try {
+                                    executeMojo(preparedStep, variants.get(variant));
+                                } catch (Exception e) {
+                                    String failure =
+                                            String.format(
+                                                    "[%d] %s: %s",
+                                                    variant + 1,
+                                                    variables.get(variant),
+                                                    e.getMessage());
+                                    getLog().error(
+                                                    "Matrix variant of step "
+                                                            + stepId
+                                                            + " failed: "
+                                                            + failure);
+                                    synchronized (failures) {
+                                        if (failures.isEmpty()) {
+                                            firstFailure[0] = e;
+                                        }
+                                        failures.add(failure);
+                                    }
+                                } finally {
+                                    variantNanos[variant] = System.nanoTime() - variantStart;
+                                }
+                            };
+                    if (executor == null) {
+                        task.run();
+                    } else {
+                        batch.add(executor.submit(task));
+                    }
+                }
+                for (Future<?> future : batch) {
+                    future.get();
+                }
+                started = end;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(
+                    "Interrupted while waiting for matrix variants of step " + stepId, e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException(
+                    "Matrix variant of step " + stepId + " failed", e.getCause());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                awaitVariants(executor, stepId);
+            }
+        }
+        long[] executed = Arrays.copyOf(variantNanos, started);
+        Arrays.sort(executed);
+        getLog().info(
+                        String.format(
+                                "---- %s: %smatrix step %s: %d of %d variants succeeded, %d failed, %d not run in %s (%d batches, %d threads; variants min %s, median %s, max %s)",
+                                mojoGoal,
+                                formatLabel(),
+                                stepId,
+                                started - failures.size(),
+                                count,
+                                failures.size(),
+                                count - started,
+                                formatDuration((System.nanoTime() - start) / 1_000_000),
+                                (count + batchSize - 1) / batchSize,
+                                matrixThreads,
+                                formatDuration(executed[0] / 1_000_000),
+                                formatDuration(executed[executed.length / 2] / 1_000_000),
+                                formatDuration(executed[executed.length - 1] / 1_000_000)));
+        if (!failures.isEmpty()) {
+            throw new MojoExecutionException(
+                    String.format(
+                            "%d of %d matrix variants of step %s failed: %s",
+                            failures.size(), count, stepId, String.join("; ", failures)),
+                    firstFailure[0]);
+        }
+    }
 
-            // Execute the mojo using the pluginManager
+    /**
+     * Waits until all variants of a matrix step have ended, even if the step thread is interrupted
+     * meanwhile. A variant that ignores its interrupt keeps the step, and its locks, waiting.
+     */
+    private void awaitVariants(ExecutorService executor, String stepId) {
+        boolean interrupted = false;
+        while (true) {
             try {
-                if (!sequenceStep.isSkip()) {
-                    pluginManager.executeMojo(session, mojoExecution);
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
                 }
-            } catch (PluginParameterException e) {
-                getLog().error(
-                                "Parameter injection failed for "
-                                        + sequenceStep.getGoal()
-                                        + ": "
-                                        + e.getMessage());
-                throw new MojoExecutionException("Parameter injection failed", e);
-            } catch (Exception e) {
-                getLog().error(
-                                "Execution failed for "
-                                        + sequenceStep.getGoal()
-                                        + ": "
-                                        + e.getMessage());
-                throw new MojoExecutionException(
-                        "Failed to execute "
-                                + sequenceStep.getArtifactId()
-                                + ":"
-                                + sequenceStep.getGoal(),
-                        e);
+                getLog().warn("Step " + stepId + " is waiting for interrupted matrix variants");
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Executes the mojo execution of a step, or of one of its matrix variants. */
+    private void executeMojo(PreparedStep preparedStep, MojoExecution mojoExecution)
+            throws Exception {
+        if (preparedStep.getStep().isFork()) {
+            executeForked(preparedStep, mojoExecution);
+        } else {
+            pluginManager.executeMojo(session, mojoExecution);
+        }
+    }
+
+    /**
+     * Executes the step with the <code>exec-step</code> goal in a pooled worker JVM, passing the
+     * merged configuration and the relevant settings of this build in a request file.
+     */
+    private void executeForked(PreparedStep preparedStep, MojoExecution mojoExecution)
+            throws MojoExecutionException {
+        SequenceStep sequenceStep = preparedStep.getStep();
+        String stepId = mojoExecution.getExecutionId();
+        Path requestFile =
+                Path.of(project.getBuild().getDirectory(), "seq-fork", toFileName(mojoExecutionId))
+                        .resolve(toFileName(stepId) + ".properties");
+        List<String> mavenArgs = new ArrayList<>();
+        mavenArgs.add("-B");
+        mavenArgs.add("-N");
+        mavenArgs.add("-ntp");
+        mavenArgs.add("-f");
+        mavenArgs.add(project.getFile().getAbsolutePath());
+        if (session.isOffline()) {
+            mavenArgs.add("-o");
+        }
+        MavenExecutionRequest request = session.getRequest();
+        if (request.getUserSettingsFile() != null && request.getUserSettingsFile().isFile()) {
+            mavenArgs.add("-s");
+            mavenArgs.add(request.getUserSettingsFile().getAbsolutePath());
+        }
+        if (request.getGlobalSettingsFile() != null && request.getGlobalSettingsFile().isFile()) {
+            mavenArgs.add("-gs");
+            mavenArgs.add(request.getGlobalSettingsFile().getAbsolutePath());
+        }
+        List<String> profiles = new ArrayList<>(request.getActiveProfiles());
+        request.getInactiveProfiles().forEach(profile -> profiles.add("!" + profile));
+        if (!profiles.isEmpty()) {
+            mavenArgs.add("-P");
+            mavenArgs.add(String.join(",", profiles));
+        }
+        mavenArgs.add("-Dmaven.repo.local=" + session.getLocalRepository().getBasedir());
+        session.getUserProperties()
+                .forEach((key, value) -> mavenArgs.add("-D" + key + "=" + value));
+        mavenArgs.add("-Dseq.stepSpec=" + requestFile.toAbsolutePath());
+        mavenArgs.add(
+                String.format(
+                        "%s:%s:%s:exec-step",
+                        seqPluginDescriptor.getGroupId(),
+                        seqPluginDescriptor.getArtifactId(),
+                        seqPluginDescriptor.getVersion()));
+
+        Properties spec = new Properties();
+        spec.setProperty("groupId", sequenceStep.getGroupId());
+        spec.setProperty("artifactId", sequenceStep.getArtifactId());
+        spec.setProperty("goal", sequenceStep.getGoal());
+        spec.setProperty("executionId", stepId);
+        Xpp3Dom mergedConfig = mojoExecution.getConfiguration();
+        if (mergedConfig != null && mergedConfig.getChildCount() > 0) {
+            spec.setProperty("configuration", ConfigurationConverter.serialize(mergedConfig));
+        }
+        File multiModuleProjectDirectory = request.getMultiModuleProjectDirectory();
+        try {
+            WorkerPool.writeRequest(
+                    requestFile,
+                    project.getBasedir().getAbsolutePath(),
+                    (multiModuleProjectDirectory != null
+                                    ? multiModuleProjectDirectory
+                                    : project.getBasedir())
+                            .getAbsolutePath(),
+                    mavenArgs,
+                    spec);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write fork request " + requestFile, e);
+        }
+        int exitCode =
+                WorkerPool.getInstance()
+                        .run(
+                                getWorkerCommand(),
+                                requestFile,
+                                LogCapture.currentStream(System.err),
+                                forkMaxExecutions,
+                                ParameterValues.parseSize(forkMaxMemory, "forkMaxMemory"),
+                                stepId,
+                                getLog());
+        if (exitCode != 0) {
+            throw new MojoExecutionException(
+                    String.format(
+                            "Forked step %s failed with exit code %d; see its output above",
+                            stepId, exitCode));
+        }
+    }
+
+    /** Returns the command line of a worker JVM, which is also its key in the pool. */
+    private List<String> getWorkerCommand() throws MojoExecutionException {
+        String mavenHome = System.getProperty("maven.home");
+        File[] bootJars =
+                mavenHome != null
+                        ? new File(mavenHome, "boot")
+                                .listFiles(
+                                        (dir, name) ->
+                                                name.startsWith("plexus-classworlds")
+                                                        && name.endsWith(".jar"))
+                        : null;
+        if (bootJars == null || bootJars.length == 0) {
+            throw new MojoExecutionException(
+                    "Cannot fork steps: no Maven installation found at maven.home=" + mavenHome);
+        }
+        String pluginJar;
+        try {
+            pluginJar =
+                    new File(
+                                    SeqMojo.class
+                                            .getProtectionDomain()
+                                            .getCodeSource()
+                                            .getLocation()
+                                            .toURI())
+                            .getAbsolutePath();
+        } catch (URISyntaxException e) {
+            throw new MojoExecutionException("Cannot locate the plugin jar", e);
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (isPresent(forkJvmArgs)) {
+            command.addAll(Arrays.asList(forkJvmArgs.trim().split("\\s+")));
+        }
+        command.add("-cp");
+        command.add(bootJars[0].getAbsolutePath() + File.pathSeparator + pluginJar);
+        command.add("-Dmaven.home=" + mavenHome);
+        command.add("-Dclassworlds.conf=" + Path.of(mavenHome, "bin", "m2.conf"));
+        command.add(ForkedStepWorker.class.getName());
+        return command;
+    }
+
+    /**
+     * Records the duration of the executed step in the timing history and compares it with the
+     * median of its previous executions. Returns the trend to append to the log line.
+     */
+    private String compareWithHistory(String stepId, StepMetrics metrics, long nanos) {
+        String key =
+                TimingHistory.key(
+                        project.getGroupId() + ":" + project.getArtifactId(),
+                        label,
+                        stepId,
+                        metrics.getCoordinates());
+        long medianNanos = timingHistory.getMedianNanos(key);
+        int samples = timingHistory.getSampleCount(key);
+        timingHistory.record(key, nanos);
+        if (medianNanos < 0) {
+            return String.format(" [history: %d of %d runs]", samples, TimingHistory.MIN_SAMPLES);
+        }
+        long changePercent = medianNanos > 0 ? (nanos - medianNanos) * 100 / medianNanos : 0;
+        String trend =
+                String.format(
+                        " [%+d%% vs median %s of %d runs]",
+                        changePercent, formatDuration(medianNanos / 1_000_000), samples);
+        if (changePercent > regressionThreshold && nanos - medianNanos >= regressionMinimumNanos) {
+            String regression =
+                    String.format(
+                            "Step %s took %s, %d%% longer than its median of %s",
+                            stepId,
+                            formatDuration(nanos / 1_000_000),
+                            changePercent,
+                            formatDuration(medianNanos / 1_000_000));
+            getLog().warn(regression);
+            synchronized (regressions) {
+                regressions.add(regression);
+            }
+        }
+        return trend;
+    }
+
+    TimingHistory loadTimingHistory() {
+        try {
+            return TimingHistory.load(historyFile.toPath(), historyWindow);
+        } catch (IOException e) {
+            getLog().warn("Could not read timing history " + historyFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveTimingHistory() {
+        if (timingHistory == null) {
+            return;
+        }
+        try {
+            timingHistory.save();
+        } catch (IOException e) {
+            getLog().warn("Could not write timing history " + historyFile + ": " + e.getMessage());
+        }
+    }
+
+    private Path getResolvedPlanFile() {
+        return Path.of(project.getBuild().getDirectory(), "seq-plan")
+                .resolve(toFileName(mojoExecutionId) + ".plan");
+    }
+
+    private void loadResolvedPlan() {
+        resolvedPlan = null;
+        resolvedPlanChanged = false;
+        if (!usesPlanCache()) {
+            if (planCache) {
+                getLog().debug("Not using a resolved plan with " + seqPluginDescriptor.getId());
             }
+            return;
+        }
+        // computed before planning, which replaces the coordinates of the steps
+        resolvedPlanKey = ResolvedPlan.computeKey(project, steps, seqPluginDescriptor.getId());
+        resolvedPlan = ResolvedPlan.load(getResolvedPlanFile(), resolvedPlanKey);
+        getLog().debug(
+                        (resolvedPlan != null ? "Using resolved plan " : "No valid resolved plan ")
+                                + getResolvedPlanFile());
+    }
+
+    /**
+     * A SNAPSHOT of this plugin may plan differently without a change to its version, which is all
+     * the key holds of it.
+     */
+    private boolean usesPlanCache() {
+        return planCache && !seqPluginDescriptor.getVersion().endsWith("-SNAPSHOT");
+    }
+
+    /**
+     * Merged configurations of SNAPSHOT plugins are not stored, since the defaults of their mojos
+     * may change without a change to the POM; neither are those of matrix steps, which have one per
+     * variant.
+     */
+    private boolean isPlanCacheable(PreparedStep preparedStep) {
+        String version = preparedStep.getStep().getVersion();
+        return !preparedStep.isMatrix() && version != null && !version.endsWith("-SNAPSHOT");
+    }
+
+    /**
+     * Stores the plan if this build resolved anything it did not hold. Entries of steps that were
+     * not resolved this time, for example because they were skipped, are kept.
+     */
+    void saveResolvedPlan(List<PreparedStep> preparedSteps) {
+        if (!usesPlanCache() || (resolvedPlan != null && !resolvedPlanChanged)) {
+            return;
+        }
+        List<ResolvedPlan.Entry> entries = new ArrayList<>();
+        for (PreparedStep preparedStep : preparedSteps) {
+            entries.add(
+                    toPlanEntry(
+                            preparedStep,
+                            resolvedPlan != null
+                                    ? resolvedPlan.getEntry(preparedStep.getIndex() - 1)
+                                    : ResolvedPlan.Entry.unresolved()));
+        }
+        try {
+            new ResolvedPlan(resolvedPlanKey, entries).save(getResolvedPlanFile());
+        } catch (IOException e) {
+            getLog().warn(
+                            "Could not write resolved plan "
+                                    + getResolvedPlanFile()
+                                    + ": "
+                                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the plan entry of the step, or <code>previous</code> if the step was not resolved in
+     * this build.
+     */
+    private ResolvedPlan.Entry toPlanEntry(PreparedStep preparedStep, ResolvedPlan.Entry previous) {
+        if (preparedStep.getPlugin() == null) {
+            return previous;
+        }
+        if (preparedStep.getMojoExecution() == null && preparedStep.getPlanEntry() != null) {
+            // taken from the plan and not prepared, or already released
+            return preparedStep.getPlanEntry();
+        }
+        SequenceStep sequenceStep = preparedStep.getStep();
+        boolean merged = preparedStep.getMojoExecution() != null && isPlanCacheable(preparedStep);
+        return new ResolvedPlan.Entry(
+                sequenceStep.getGroupId(),
+                sequenceStep.getArtifactId(),
+                sequenceStep.getVersion(),
+                sequenceStep.getGoal(),
+                sequenceStep.getExecutionId(),
+                sequenceStep.getConfiguration(),
+                merged || previous.isMerged(),
+                merged ? preparedStep.getMergedConfiguration() : previous.getMergedConfiguration());
+    }
+
+    private OutputCache createOutputCache() throws MojoExecutionException {
+        if (!outputCache) {
+            return null;
+        }
+        long maxBytes = ParameterValues.parseSize(outputCacheMaxSize, "outputCacheMaxSize");
+        return new OutputCache(
+                outputCacheDirectory.toPath(),
+                maxBytes > 0 ? maxBytes : Long.MAX_VALUE,
+                outputCacheHardLinks);
+    }
 
-            long duration = System.currentTimeMillis() - startTime;
+    /** Reports the hit rate of the output cache and evicts entries if anything was stored. */
+    void closeOutputCache() {
+        if (stepOutputCache == null) {
+            return;
+        }
+        String summary = stepOutputCache.getSummary();
+        if (summary != null) {
+            getLog().info("Output cache: " + summary);
+        }
+        if (stepOutputCache.getStores() > 0) {
+            try {
+                int evicted = stepOutputCache.evict();
+                if (evicted > 0) {
+                    getLog().debug("Evicted " + evicted + " entries from the output cache");
+                }
+            } catch (IOException e) {
+                getLog().warn("Could not evict entries from the output cache: " + e.getMessage());
+            }
+        }
+        stepOutputCache = null;
+    }
+
+    /**
+     * Returns the key of the step's outputs in the output cache, or null if the cache is disabled
+     * or the step does not declare both inputs and outputs.
+     */
+    String getOutputCacheKey(SequenceStep sequenceStep, UpToDateCheck upToDateCheck) {
+        if (stepOutputCache == null
+                || upToDateCheck == null
+                || upToDateCheck.getFingerprint() == null
+                || sequenceStep.getOutputs() == null
+                || sequenceStep.getOutputs().isEmpty()) {
+            return null;
+        }
+        return OutputCache.computeKey(upToDateCheck.getFingerprint(), sequenceStep.getOutputs());
+    }
+
+    /** Returns the up-to-date check of a step in a project, or null if it declares no inputs. */
+    UpToDateCheck newUpToDateCheck(PreparedStep preparedStep, MavenProject module) {
+        SequenceStep sequenceStep = preparedStep.getStep();
+        if (sequenceStep.getInputs() == null || sequenceStep.getInputs().isEmpty()) {
+            return null;
+        }
+        return new UpToDateCheck(
+                module.getBasedir().toPath(),
+                getStateFile(module, preparedStep.getExecutionId()),
+                sequenceStep.getInputs(),
+                sequenceStep.getOutputs());
+    }
+
+    /**
+     * Computes the fingerprint of a step, also with <code>seq.force</code> so that the run is
+     * recorded, and returns whether the step can be skipped. If the inputs cannot be read, this is
+     * logged and the step runs without recording its state.
+     */
+    boolean isUpToDate(UpToDateCheck upToDateCheck, PreparedStep preparedStep, String stepId) {
+        if (upToDateCheck == null) {
+            return false;
+        }
+        String fingerprintId =
+                preparedStep.getPluginDescriptor().getId() + ":" + preparedStep.getStep().getGoal();
+        if (preparedStep.isMatrix()) {
+            fingerprintId += " matrix=" + preparedStep.getMatrixVariables();
+        }
+        try {
+            return upToDateCheck.isUpToDate(fingerprintId, preparedStep.getMergedConfiguration())
+                    && !force;
+        } catch (IOException e) {
+            getLog().warn(
+                            "Could not check whether step "
+                                    + stepId
+                                    + " is up to date: "
+                                    + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Restores the outputs of a step from the output cache; returns false on a miss. */
+    boolean restoreOutputs(String cacheKey, Path basedir, String stepId, StepMetrics metrics) {
+        metrics.begin();
+        try {
+            int restored = stepOutputCache.restore(cacheKey, basedir);
+            if (restored < 0) {
+                return false;
+            }
             getLog().info(
-                            String.format(
-                                    "---- %s: %sstep %d (%s) completed in %s",
-                                    mojoGoal,
-                                    formattedLabel,
-                                    index,
-                                    currentExecutionId,
-                                    formatDuration(duration)));
+                            "Restored "
+                                    + restored
+                                    + " output file(s) of step "
+                                    + stepId
+                                    + " from the output cache");
+            return true;
+        } catch (IOException e) {
+            getLog().warn(
+                            "Could not restore the outputs of step "
+                                    + stepId
+                                    + " from the output cache, executing it: "
+                                    + e.getMessage());
+            return false;
+        } finally {
+            metrics.end();
         }
     }
 
-    private String formatDuration(long durationMs) {
+    void storeOutputs(String cacheKey, Path basedir, SequenceStep sequenceStep, String stepId) {
+        try {
+            stepOutputCache.store(cacheKey, basedir, sequenceStep.getOutputs());
+        } catch (IOException e) {
+            getLog().warn(
+                            "Could not store the outputs of step "
+                                    + stepId
+                                    + " in the output cache: "
+                                    + e.getMessage());
+        }
+    }
+
+    private void writeReport(PerformanceReport performanceReport) {
+        if (!report && !reactorReport) {
+            return;
+        }
+        try {
+            if (report) {
+                Path reportDirectory = Path.of(project.getBuild().getDirectory(), "seq-report");
+                performanceReport.write(reportDirectory);
+                getLog().info("Performance report written to " + reportDirectory);
+            }
+            if (reactorReport) {
+                MavenProject topLevelProject =
+                        session.getTopLevelProject() != null
+                                ? session.getTopLevelProject()
+                                : project;
+                performanceReport.writeReactorSummary(
+                        session, Path.of(topLevelProject.getBuild().getDirectory(), "seq-report"));
+            }
+        } catch (IOException e) {
+            getLog().warn("Could not write performance report: " + e.getMessage());
+        }
+    }
+
+    Path getStateFile(MavenProject module, String stepExecutionId) {
+        return Path.of(module.getBuild().getDirectory(), "seq-state", toFileName(mojoExecutionId))
+                .resolve(toFileName(stepExecutionId) + ".properties");
+    }
+
+    static String toFileName(String id) {
+        return id.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private List<String> getStepDependencies() {
+        return steps.stream()
+                .map(step -> isPresent(step.getDependsOn()) ? step.getDependsOn() : null)
+                .collect(Collectors.toList());
+    }
+
+    private List<String> getStepGroups() {
+        return steps.stream()
+                .map(
+                        step ->
+                                isPresent(step.getParallelGroup())
+                                        ? step.getParallelGroup().trim()
+                                        : null)
+                .collect(Collectors.toList());
+    }
+
+    private String getStepExecutionId(SequenceStep sequenceStep, int index) {
+        return sequenceStep.getId() != null ? sequenceStep.getId() : mojoExecutionId + "-" + index;
+    }
+
+    String formatLabel() {
+        return getLabel() != null && !getLabel().isEmpty() ? "'" + getLabel() + "' " : "";
+    }
+
+    /**
+     * Runs the sequence step-major across all projects of the reactor: each step is executed in
+     * every project, up to {@link #threads} projects at a time, before the next step starts. A step
+     * is resolved once, and its descriptors, plugin realm and merged configuration are shared by
+     * all projects. Conditions and up-to-date checks are evaluated per project.
+     */
+    void runAggregate() throws MojoExecutionException {
+        if (steps == null || steps.isEmpty()) {
+            getLog().info("No nested <step> elements defined - Nothing to do.");
+            return;
+        }
+        SequenceEvents.SequenceEvent sequenceEvent = new SequenceEvents.SequenceEvent();
+        sequenceEvent.begin();
+        String outcome = "FAILED";
+        try {
+            new AggregateSequence(this).run();
+            outcome = "SUCCEEDED";
+        } finally {
+            sequenceEvent.report(
+                    project.getId(), mojoExecutionId, mojoGoal, label, steps.size(), outcome);
+        }
+    }
+
+    /**
+     * Resolves all steps that are not skipped without running them and prints the plan. Writes the
+     * plan as JSON to <code>exportFile</code> unless it is null.
+     */
+    void plan(File exportFile) throws MojoExecutionException {
+        if (steps == null || steps.isEmpty()) {
+            getLog().info("No nested <step> elements defined - Nothing to do.");
+            return;
+        }
+        new SequencePlan(this).print(exportFile);
+    }
+
+    /**
+     * Resolves the sequence once and runs it, then watches the inputs of its steps and runs it
+     * again whenever they change. Runs until the build is interrupted.
+     */
+    void watch(long quietNanos) throws MojoExecutionException {
+        if (steps == null || steps.isEmpty()) {
+            getLog().info("No nested <step> elements defined - Nothing to do.");
+            return;
+        }
+        watching = true;
+        new SequenceWatch(this, quietNanos).run();
+    }
+
+    private void logCriticalPath(StepScheduler scheduler, List<StepScheduler.Node> nodes)
+            throws MojoExecutionException {
+        List<StepScheduler.Node> criticalPath = scheduler.criticalPath(nodes);
+        long criticalNanos =
+                criticalPath.stream().mapToLong(StepScheduler.Node::getDurationNanos).sum();
+        long totalNanos = nodes.stream().mapToLong(StepScheduler.Node::getDurationNanos).sum();
+        long wallClockNanos = scheduler.getWallClockNanos();
+        getLog().info(
+                        String.format(
+                                "---- %s: %scritical path: %s (%s)",
+                                mojoGoal,
+                                formatLabel(),
+                                criticalPath.stream()
+                                        .map(StepScheduler.Node::getId)
+                                        .collect(Collectors.joining(" -> ")),
+                                formatDuration(criticalNanos / 1_000_000)));
+        getLog().info(
+                        String.format(
+                                "---- %s: %swall-clock %s with %d threads, sum of steps %s, saved %s",
+                                mojoGoal,
+                                formatLabel(),
+                                formatDuration(wallClockNanos / 1_000_000),
+                                scheduler.getThreads(),
+                                formatDuration(totalNanos / 1_000_000),
+                                formatDuration(
+                                        Math.max(0, totalNanos - wallClockNanos) / 1_000_000)));
+    }
+
+    static String formatDuration(long durationMs) {
         Duration duration = Duration.ofMillis(durationMs);
         long hours = duration.toHours();
         long minutes = duration.toMinutesPart();
@@ -260,20 +2000,10 @@ public class SeqMojo extends AbstractMojo {
                 candidateArtifactIds.add(identifier + "-maven-plugin");
             }
 
-            List<Plugin> matchingPlugins = new ArrayList<>();
-            for (Object pluginObj : project.getBuild().getPlugins()) {
-                Plugin plugin = (Plugin) pluginObj;
-                if (candidateArtifactIds.contains(plugin.getArtifactId())) {
-                    matchingPlugins.add(plugin);
-                }
-            }
-            if (project.getPluginManagement() != null) {
-                for (Plugin plugin : project.getPluginManagement().getPlugins()) {
-                    if (candidateArtifactIds.contains(plugin.getArtifactId())) {
-                        matchingPlugins.add(plugin);
-                    }
-                }
-            }
+            List<Plugin> matchingPlugins =
+                    descriptorCache
+                            .getProjectIndex(project)
+                            .findByArtifactIds(candidateArtifactIds);
 
             if (matchingPlugins.isEmpty()) {
                 throw new MojoExecutionException(
@@ -298,7 +2028,7 @@ public class SeqMojo extends AbstractMojo {
         if (coordinateExecutionId != null && !coordinateExecutionId.isEmpty()) {
             step.setExecutionId(coordinateExecutionId);
             String key = String.format("%s:%s", step.getGroupId(), step.getArtifactId());
-            Plugin plugin = project.getBuild().getPluginsAsMap().get(key);
+            Plugin plugin = descriptorCache.getProjectIndex(project).getBuildPlugin(key);
             if (plugin != null && plugin.getExecutions() != null) {
                 Xpp3Dom pluginExecutionConfig = null;
                 for (PluginExecution pe : plugin.getExecutions()) {
@@ -309,7 +2039,8 @@ public class SeqMojo extends AbstractMojo {
                 }
                 if (pluginExecutionConfig != null) {
                     Xpp3Dom merged =
-                            Xpp3Dom.mergeXpp3Dom(step.getConfiguration(), pluginExecutionConfig);
+                            ConfigurationConverter.mergeWithExecutionConfiguration(
+                                    step.getConfiguration(), pluginExecutionConfig);
                     step.setConfiguration(merged);
                 }
             }
@@ -317,7 +2048,7 @@ public class SeqMojo extends AbstractMojo {
 
         if (!isPresent(step.getVersion())) {
             String key = String.format("%s:%s", step.getGroupId(), step.getArtifactId());
-            Plugin plugin = project.getBuild().getPluginsAsMap().get(key);
+            Plugin plugin = descriptorCache.getProjectIndex(project).getBuildPlugin(key);
             if (plugin == null || !isPresent(plugin.getVersion())) {
                 throw new MojoExecutionException(
                         "Version not specified in pluginCoordinates and no version found in POM for "
@@ -327,7 +2058,7 @@ public class SeqMojo extends AbstractMojo {
         }
     }
 
-    private String formatCoordinates(SequenceStep config, Xpp3Dom defaultConfig) {
+    String formatCoordinates(SequenceStep config, Xpp3Dom defaultConfig) {
         String groupId = config.getGroupId();
         String artifactId = config.getArtifactId();
         String version = config.getVersion();
@@ -361,7 +2092,7 @@ public class SeqMojo extends AbstractMojo {
         return coord;
     }
 
-    private boolean isPresent(String value) {
+    static boolean isPresent(String value) {
         return value != null && !value.trim().isEmpty();
     }
 
@@ -390,6 +2121,78 @@ public class SeqMojo extends AbstractMojo {
         @Parameter(defaultValue = "false")
         private boolean skip;
 
+        /**
+         * Comma-separated ids of the steps that must complete before this step starts. If set, this
+         * step no longer waits for the step declared before it.
+         */
+        @Parameter private String dependsOn;
+
+        /** Consecutive steps with the same parallel group may run concurrently */
+        @Parameter private String parallelGroup;
+
+        /**
+         * Files read by the step, as Ant-style patterns or directories relative to the project base
+         * directory. If set, the step is skipped as up to date when its inputs, plugin version and
+         * merged configuration are unchanged since its last successful execution.
+         */
+        @Parameter private List<String> inputs;
+
+        /**
+         * Files written by the step, as Ant-style patterns or directories relative to the project
+         * base directory. A step is only up to date if each of these matches an existing file.
+         */
+        @Parameter private List<String> outputs;
+
+        /**
+         * Comma-separated named resources held while the step executes, as <code>name[:permits]
+         * </code>. Steps of all modules in the JVM share the resources, so at most <code>permits
+         * </code> steps holding the same resource run at the same time (default permits: 1).
+         */
+        @Parameter private String locks;
+
+        /**
+         * Maximum execution time of the step, such as <code>90s</code> or <code>15m</code>. When it
+         * expires, a thread dump is written to target/seq-dumps/ and the step is interrupted and
+         * fails.
+         */
+        @Parameter private String timeout;
+
+        /** Execution time after which a warning is logged that the step is still running */
+        @Parameter private String warnAfter;
+
+        /**
+         * Executes the step in a pooled worker JVM instead of the Maven JVM, isolating plugins that
+         * leak memory or threads, modify system properties or call System.exit().
+         */
+        @Parameter(defaultValue = "false")
+        private boolean fork;
+
+        /**
+         * Conditions that must all hold for the step to run: <code>exists</code>, <code>missing
+         * </code>, <code>changed</code> (<code>files</code> newer than a <code>since</code>
+         * marker), <code>property</code> and <code>executed</code> (an earlier step). A step whose
+         * conditions fail is skipped without resolving its plugin.
+         */
+        @Parameter private PlexusConfiguration when;
+
+        /**
+         * Variable sets, each executing the goal once with its variables substituted for <code>
+         * @{name}</code> placeholders in the configuration. Each child element is one variant; its
+         * children are the variables.
+         */
+        @Parameter private PlexusConfiguration matrix;
+
+        /** Maximum number of matrix variants executing concurrently */
+        @Parameter(defaultValue = "1")
+        private int matrixThreads = 1;
+
+        /**
+         * Number of matrix variants per batch; a batch only starts when the previous one has
+         * completed without failures. Values below 1 put all variants into one batch.
+         */
+        @Parameter(defaultValue = "0")
+        private int matrixBatchSize;
+
         private Xpp3Dom configurationDom;
 
         public String getPluginCoordinates() {
@@ -456,6 +2259,102 @@ public class SeqMojo extends AbstractMojo {
             this.skip = skip;
         }
 
+        public String getDependsOn() {
+            return dependsOn;
+        }
+
+        public void setDependsOn(String dependsOn) {
+            this.dependsOn = dependsOn;
+        }
+
+        public String getParallelGroup() {
+            return parallelGroup;
+        }
+
+        public void setParallelGroup(String parallelGroup) {
+            this.parallelGroup = parallelGroup;
+        }
+
+        public List<String> getInputs() {
+            return inputs;
+        }
+
+        public void setInputs(List<String> inputs) {
+            this.inputs = inputs;
+        }
+
+        public List<String> getOutputs() {
+            return outputs;
+        }
+
+        public void setOutputs(List<String> outputs) {
+            this.outputs = outputs;
+        }
+
+        public String getLocks() {
+            return locks;
+        }
+
+        public void setLocks(String locks) {
+            this.locks = locks;
+        }
+
+        public String getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(String timeout) {
+            this.timeout = timeout;
+        }
+
+        public String getWarnAfter() {
+            return warnAfter;
+        }
+
+        public void setWarnAfter(String warnAfter) {
+            this.warnAfter = warnAfter;
+        }
+
+        public boolean isFork() {
+            return fork;
+        }
+
+        public void setFork(boolean fork) {
+            this.fork = fork;
+        }
+
+        public PlexusConfiguration getWhen() {
+            return when;
+        }
+
+        public void setWhen(PlexusConfiguration when) {
+            this.when = when;
+        }
+
+        public PlexusConfiguration getMatrix() {
+            return matrix;
+        }
+
+        public void setMatrix(PlexusConfiguration matrix) {
+            this.matrix = matrix;
+        }
+
+        public int getMatrixThreads() {
+            return matrixThreads;
+        }
+
+        public void setMatrixThreads(int matrixThreads) {
+            this.matrixThreads = matrixThreads;
+        }
+
+        public int getMatrixBatchSize() {
+            return matrixBatchSize;
+        }
+
+        public void setMatrixBatchSize(int matrixBatchSize) {
+            this.matrixBatchSize = matrixBatchSize;
+        }
+
         public PlexusConfiguration getRawConfiguration() {
             return configuration;
         }
@@ -497,6 +2396,30 @@ public class SeqMojo extends AbstractMojo {
                     + (configuration != null ? configuration.toString() : "null")
                     + "', skip="
                     + skip
+                    + ", dependsOn='"
+                    + dependsOn
+                    + "', parallelGroup='"
+                    + parallelGroup
+                    + "', inputs="
+                    + inputs
+                    + ", outputs="
+                    + outputs
+                    + ", locks='"
+                    + locks
+                    + "', timeout='"
+                    + timeout
+                    + "', warnAfter='"
+                    + warnAfter
+                    + "', fork="
+                    + fork
+                    + ", when="
+                    + (when != null ? when.toString() : "null")
+                    + ", matrix="
+                    + (matrix != null ? matrix.getChildCount() + " variants" : "null")
+                    + ", matrixThreads="
+                    + matrixThreads
+                    + ", matrixBatchSize="
+                    + matrixBatchSize
                     + "}";
         }
     }
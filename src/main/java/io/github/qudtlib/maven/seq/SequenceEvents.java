@@ -0,0 +1,167 @@
+package io.github.qudtlib.maven.seq;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder events of sequences and their steps, so that recordings show the time of each
+ * step under its own name instead of as anonymous time in Maven's mojo executor. The events are in
+ * the category "Maven / Sequencer" and enabled by the default recording settings.
+ *
+ * <p>Fields are only filled in if the event will be committed, so without a running recording an
+ * event costs one short-lived allocation and an enabled check.
+ */
+class SequenceEvents {
+
+    private SequenceEvents() {}
+
+    /** Records a step skipped by its <code>skip</code> flag or its <code>when</code> condition. */
+    static void stepSkipped(int index, String executionId, String coordinates, String reason) {
+        StepSkippedEvent event = new StepSkippedEvent();
+        if (event.isEnabled()) {
+            event.index = index;
+            event.executionId = executionId;
+            event.coordinates = coordinates;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+
+    @Name("io.github.qudtlib.seq.Sequence")
+    @Label("Sequence")
+    @Category({"Maven", "Sequencer"})
+    @Description("Execution of a sequence, from planning its steps to writing its report")
+    @StackTrace(false)
+    static class SequenceEvent extends Event {
+        @Label("Project")
+        String project;
+
+        @Label("Execution Id")
+        String executionId;
+
+        @Label("Goal")
+        String goal;
+
+        @Label("Label")
+        String label;
+
+        @Label("Steps")
+        int steps;
+
+        @Label("Outcome")
+        String outcome;
+
+        /** Commits the event, which must have begun, if the recording wants it. */
+        void report(
+                String project,
+                String executionId,
+                String goal,
+                String label,
+                int steps,
+                String outcome) {
+            if (shouldCommit()) {
+                this.project = project;
+                this.executionId = executionId;
+                this.goal = goal;
+                this.label = label;
+                this.steps = steps;
+                this.outcome = outcome;
+                commit();
+            }
+        }
+    }
+
+    @Name("io.github.qudtlib.seq.StepResolution")
+    @Label("Step Resolution")
+    @Category({"Maven", "Sequencer"})
+    @Description(
+            "Resolution of a step's plugin coordinates, its plugin and mojo descriptors and realm, or"
+                    + " the merge of its configuration")
+    @StackTrace(false)
+    static class StepResolutionEvent extends Event {
+        @Label("Step Index")
+        int index;
+
+        @Label("Execution Id")
+        String executionId;
+
+        @Label("Phase")
+        @Description("coordinates, descriptor or configuration")
+        String phase;
+
+        @Label("Coordinates")
+        String coordinates;
+
+        @Label("From Resolved Plan")
+        boolean resolvedPlan;
+
+        void report(
+                int index,
+                String executionId,
+                String phase,
+                String coordinates,
+                boolean resolvedPlan) {
+            if (shouldCommit()) {
+                this.index = index;
+                this.executionId = executionId;
+                this.phase = phase;
+                this.coordinates = coordinates;
+                this.resolvedPlan = resolvedPlan;
+                commit();
+            }
+        }
+    }
+
+    @Name("io.github.qudtlib.seq.StepExecution")
+    @Label("Step Execution")
+    @Category({"Maven", "Sequencer"})
+    @Description("Execution of a step, including up-to-date checking and waiting for its locks")
+    @StackTrace(false)
+    static class StepExecutionEvent extends Event {
+        @Label("Project")
+        String project;
+
+        @Label("Step Index")
+        int index;
+
+        @Label("Execution Id")
+        String executionId;
+
+        @Label("Coordinates")
+        String coordinates;
+
+        @Label("Outcome")
+        @Description("EXECUTED, UP_TO_DATE, FROM_CACHE, FAILED or TIMED_OUT")
+        String outcome;
+
+        void report(
+                String project, int index, String executionId, String coordinates, String outcome) {
+            if (shouldCommit()) {
+                this.project = project;
+                this.index = index;
+                this.executionId = executionId;
+                this.coordinates = coordinates;
+                this.outcome = outcome;
+                commit();
+            }
+        }
+    }
+
+    @Name("io.github.qudtlib.seq.StepSkipped")
+    @Label("Step Skipped")
+    @Category({"Maven", "Sequencer"})
+    @Description("A step skipped by its skip flag or its when condition")
+    @StackTrace(false)
+    static class StepSkippedEvent extends Event {
+        @Label("Step Index")
+        int index;
+
+        @Label("Execution Id")
+        String executionId;
+
+        @Label("Coordinates")
+        String coordinates;
+
+        @Label("Reason")
+        String reason;
+    }
+}
@@ -0,0 +1,186 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Prints the plan of a sequence for <code>seq:plan</code>: resolves all steps that are not skipped
+ * without loading their plugin realms or running them, and prints each step with its estimated
+ * cost, taken from the timing history.
+ */
+class SequencePlan {
+
+    private final SeqMojo mojo;
+    private final Log log;
+    private final MavenProject project;
+
+    SequencePlan(SeqMojo mojo) {
+        this.mojo = mojo;
+        this.log = mojo.getLog();
+        this.project = mojo.getProject();
+    }
+
+    /** Prints the plan, and writes it as JSON to <code>exportFile</code> unless it is null. */
+    void print(File exportFile) throws MojoExecutionException {
+        List<String> ids = mojo.getStepIds();
+        List<PreparedStep> preparedSteps = mojo.planSteps(ids, mojo.buildStepGraph(ids), false);
+        boolean planLoaded = mojo.isResolvedPlanLoaded();
+        for (PreparedStep preparedStep : preparedSteps) {
+            if (preparedStep.getSkipReason() == null) {
+                mojo.prepareStep(preparedStep, false);
+            }
+        }
+        mojo.saveResolvedPlan(preparedSteps);
+        TimingHistory planHistory = mojo.isHistory() ? mojo.loadTimingHistory() : null;
+        String formattedLabel = mojo.formatLabel();
+        long totalNanos = 0;
+        int estimated = 0;
+        int planned = 0;
+        JsonWriter json =
+                new JsonWriter()
+                        .beginObject()
+                        .property("project", project.getId())
+                        .property("executionId", mojo.getMojoExecutionId())
+                        .property("label", mojo.getLabel())
+                        .property("resolvedPlanCached", planLoaded)
+                        .name("steps")
+                        .beginArray();
+        for (PreparedStep preparedStep : preparedSteps) {
+            SeqMojo.SequenceStep sequenceStep = preparedStep.getStep();
+            String stepId = preparedStep.getExecutionId();
+            json.beginInlineObject()
+                    .property("index", preparedStep.getIndex())
+                    .property("stepId", stepId);
+            if (preparedStep.getSkipReason() != null) {
+                log.info(
+                        String.format(
+                                "---- %s: %sstep %d (%s) SKIPPED: %s",
+                                mojo.getMojoGoal(),
+                                formattedLabel,
+                                preparedStep.getIndex(),
+                                stepId,
+                                preparedStep.getSkipReason()));
+                json.property("skipped", preparedStep.getSkipReason()).end();
+                continue;
+            }
+            planned++;
+            String coordinates =
+                    preparedStep.getPluginDescriptor().getId() + ":" + sequenceStep.getGoal();
+            long estimateNanos = -1;
+            int samples = 0;
+            if (planHistory != null) {
+                String key =
+                        TimingHistory.key(
+                                project.getGroupId() + ":" + project.getArtifactId(),
+                                mojo.getLabel(),
+                                stepId,
+                                coordinates);
+                estimateNanos = planHistory.getEstimateNanos(key);
+                samples = planHistory.getSampleCount(key);
+            }
+            if (estimateNanos >= 0) {
+                totalNanos += estimateNanos;
+                estimated++;
+            }
+            List<String> traits = new ArrayList<>();
+            if (SeqMojo.isPresent(sequenceStep.getDependsOn())) {
+                traits.add("depends on " + sequenceStep.getDependsOn().trim());
+            }
+            if (SeqMojo.isPresent(sequenceStep.getParallelGroup())) {
+                traits.add("group " + sequenceStep.getParallelGroup().trim());
+            }
+            if (preparedStep.getCondition() != null) {
+                traits.add("conditional");
+            }
+            if (preparedStep.isMatrix()) {
+                traits.add("matrix of " + preparedStep.getMatrixVariables().size());
+            }
+            if (sequenceStep.isFork()) {
+                traits.add("fork");
+            }
+            if (!preparedStep.getLocks().isEmpty()) {
+                traits.add("locks " + preparedStep.getLocks().getNames());
+            }
+            if (preparedStep.getTimeoutNanos() > 0) {
+                traits.add(
+                        "timeout "
+                                + SeqMojo.formatDuration(
+                                        preparedStep.getTimeoutNanos() / 1_000_000));
+            }
+            if (sequenceStep.getInputs() != null && !sequenceStep.getInputs().isEmpty()) {
+                traits.add("up-to-date check");
+            }
+            log.info(
+                    String.format(
+                            "---- %s: %sstep %d (%s) %s: %s%s",
+                            mojo.getMojoGoal(),
+                            formattedLabel,
+                            preparedStep.getIndex(),
+                            stepId,
+                            mojo.formatCoordinates(sequenceStep, null),
+                            estimateNanos >= 0
+                                    ? String.format(
+                                            "~%s (median of %d runs)",
+                                            SeqMojo.formatDuration(estimateNanos / 1_000_000),
+                                            samples)
+                                    : "no estimate",
+                            traits.isEmpty() ? "" : " [" + String.join(", ", traits) + "]"));
+            Xpp3Dom mergedConfig = preparedStep.getMergedConfiguration();
+            if (mergedConfig != null && log.isDebugEnabled()) {
+                log.debug("Configuration of step " + stepId + ": " + mergedConfig);
+            }
+            json.property("coordinates", coordinates)
+                    .property("pluginExecutionId", sequenceStep.getExecutionId())
+                    .property("dependsOn", sequenceStep.getDependsOn())
+                    .property("parallelGroup", sequenceStep.getParallelGroup())
+                    .property("conditional", preparedStep.getCondition() != null)
+                    .property("fork", sequenceStep.isFork())
+                    .property("matrixVariants", preparedStep.getMatrixVariables().size())
+                    .property(
+                            "locks",
+                            preparedStep.getLocks().isEmpty()
+                                    ? null
+                                    : preparedStep.getLocks().getNames())
+                    .property("timeoutMillis", preparedStep.getTimeoutNanos() / 1_000_000)
+                    .name("estimatedMillis");
+            if (estimateNanos >= 0) {
+                json.value(estimateNanos / 1_000_000);
+            } else {
+                json.nullValue();
+            }
+            json.property("historySamples", samples)
+                    .property(
+                            "configuration", mergedConfig != null ? mergedConfig.toString() : null)
+                    .end();
+        }
+        json.end().property("estimatedMillis", totalNanos / 1_000_000).end();
+        log.info(
+                String.format(
+                        "---- %s: %s%d of %d steps planned, %d with an estimate totalling %s"
+                                + " when run sequentially; resolved plan %s",
+                        mojo.getMojoGoal(),
+                        formattedLabel,
+                        planned,
+                        preparedSteps.size(),
+                        estimated,
+                        SeqMojo.formatDuration(totalNanos / 1_000_000),
+                        planLoaded ? "reused" : "resolved"));
+        if (exportFile != null) {
+            try {
+                Files.createDirectories(exportFile.toPath().toAbsolutePath().getParent());
+                Files.writeString(exportFile.toPath(), json + "\n", StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not write plan to " + exportFile, e);
+            }
+            log.info("Plan written to " + exportFile);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Runs a sequence for <code>seq:watch</code>: resolves it once and runs it, then watches the inputs
+ * of its steps and, whenever they change, runs it again from the first step whose inputs changed.
+ * Descriptors, mojo executions and plugin realms are kept between rounds. A failing round is logged
+ * and the watch goes on.
+ */
+class SequenceWatch {
+
+    private final SeqMojo mojo;
+    private final Log log;
+    private final long quietNanos;
+
+    SequenceWatch(SeqMojo mojo, long quietNanos) {
+        this.mojo = mojo;
+        this.log = mojo.getLog();
+        this.quietNanos = quietNanos;
+    }
+
+    void run() throws MojoExecutionException {
+        List<String> ids = mojo.getStepIds();
+        List<StepScheduler.Node> nodes = mojo.buildStepGraph(ids);
+        List<PreparedStep> preparedSteps = mojo.planSteps(ids, nodes, false);
+        List<String> inputs = new ArrayList<>();
+        for (PreparedStep preparedStep : preparedSteps) {
+            if (preparedStep.getSkipReason() == null
+                    && preparedStep.getStep().getInputs() != null) {
+                inputs.addAll(preparedStep.getStep().getInputs());
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new MojoExecutionException(
+                    "seq:watch needs at least one step that declares <inputs>");
+        }
+        mojo.openSequence(true);
+        MavenProject project = mojo.getProject();
+        try {
+            for (PreparedStep preparedStep : preparedSteps) {
+                if (preparedStep.getSkipReason() == null && preparedStep.getCondition() == null) {
+                    mojo.prepareStep(preparedStep, true);
+                }
+            }
+            mojo.saveResolvedPlan(preparedSteps);
+            Path basedir = project.getBasedir().toPath();
+            try (InputWatcher watcher =
+                    new InputWatcher(basedir, Path.of(project.getBuild().getDirectory()), inputs)) {
+                runRound(preparedSteps, nodes, 1);
+                boolean announce = true;
+                while (true) {
+                    if (announce) {
+                        log.info(
+                                String.format(
+                                        "---- %s: %swatching %d director%s for changes",
+                                        mojo.getMojoGoal(),
+                                        mojo.formatLabel(),
+                                        watcher.getDirectoryCount(),
+                                        watcher.getDirectoryCount() == 1 ? "y" : "ies"));
+                    }
+                    Set<String> changed = watcher.awaitChanges(quietNanos);
+                    int first = getFirstAffectedStep(preparedSteps, basedir, changed);
+                    announce = first > 0;
+                    if (!announce) {
+                        continue;
+                    }
+                    log.info(
+                            String.format(
+                                    "---- %s: %s%s; running steps %d to %d",
+                                    mojo.getMojoGoal(),
+                                    mojo.formatLabel(),
+                                    changed == null
+                                            ? "file system events were lost"
+                                            : changed.size()
+                                                    + " changed file(s) affect step "
+                                                    + first
+                                                    + " ("
+                                                    + ids.get(first - 1)
+                                                    + ")",
+                                    first,
+                                    preparedSteps.size()));
+                    runRound(preparedSteps, nodes, first);
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not watch the inputs of the sequence", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            mojo.closeOutputCache();
+        }
+    }
+
+    /**
+     * Returns the index of the first step with an input among the changed files, 1 if it is not
+     * known which files changed, or -1 if no step is affected. Files matching the outputs of a step
+     * are ignored, so that steps reading their own outputs are not run again and again.
+     */
+    private static int getFirstAffectedStep(
+            List<PreparedStep> preparedSteps, Path basedir, Set<String> changed) {
+        if (changed == null) {
+            return 1;
+        }
+        for (PreparedStep preparedStep : preparedSteps) {
+            SeqMojo.SequenceStep sequenceStep = preparedStep.getStep();
+            for (String file : changed) {
+                if (UpToDateCheck.matches(basedir, sequenceStep.getInputs(), file)
+                        && preparedSteps.stream()
+                                .noneMatch(
+                                        p ->
+                                                UpToDateCheck.matches(
+                                                        basedir, p.getStep().getOutputs(), file))) {
+                    return preparedStep.getIndex();
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Runs the steps from the specified index on; a failure is logged, not thrown. */
+    private void runRound(
+            List<PreparedStep> preparedSteps, List<StepScheduler.Node> nodes, int first) {
+        for (PreparedStep preparedStep : preparedSteps) {
+            if (preparedStep.getIndex() >= first && preparedStep.getCondition() != null) {
+                // evaluated again in this round
+                preparedStep.setSkipReason(null);
+            }
+        }
+        PerformanceReport performanceReport = mojo.newPerformanceReport();
+        long roundStart = mojo.beginRound();
+        String outcome = "completed";
+        StepScheduler scheduler =
+                new StepScheduler(
+                        mojo.getThreads() > 0
+                                ? mojo.getThreads()
+                                : Runtime.getRuntime().availableProcessors(),
+                        log);
+        try {
+            scheduler.run(
+                    nodes,
+                    node -> {
+                        if (node.getIndex() >= first) {
+                            mojo.executeStep(
+                                    preparedSteps.get(node.getIndex() - 1),
+                                    scheduler,
+                                    performanceReport);
+                        }
+                    });
+        } catch (MojoExecutionException | MojoFailureException e) {
+            outcome = "failed: " + e.getMessage();
+        } finally {
+            mojo.endRound(performanceReport, roundStart);
+        }
+        String message =
+                String.format(
+                        "---- %s: %sround %s in %s",
+                        mojo.getMojoGoal(),
+                        mojo.formatLabel(),
+                        outcome,
+                        SeqMojo.formatDuration((System.nanoTime() - roundStart) / 1_000_000));
+        if (outcome.equals("completed")) {
+            log.info(message);
+        } else {
+            log.error(message);
+        }
+    }
+}
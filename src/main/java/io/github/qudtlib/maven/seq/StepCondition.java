@@ -0,0 +1,227 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+
+/**
+ * The <code>when</code> condition of a step: a list of cheap checks that must all hold for the step
+ * to run. A step whose condition fails is skipped before its plugin is resolved, so neither its
+ * descriptor nor its plugin realm is ever loaded.
+ *
+ * <p>Conditions on properties only are evaluated before the first step runs. Conditions on files or
+ * on earlier steps are evaluated when the step is due, since earlier steps may change their
+ * outcome; such steps are resolved only after their condition has held.
+ */
+class StepCondition {
+
+    private final List<Check> checks;
+    private final boolean propertiesOnly;
+
+    private StepCondition(List<Check> checks) {
+        this.checks = checks;
+        this.propertiesOnly = checks.stream().allMatch(check -> check.kind.equals("property"));
+    }
+
+    /** A single check; <code>value</code> is the element content, without a leading '!' */
+    private static class Check {
+        private final String kind;
+        private final String value;
+        private final boolean negated;
+        private final String since;
+
+        Check(String kind, String value, boolean negated, String since) {
+            this.kind = kind;
+            this.value = value;
+            this.negated = negated;
+            this.since = since;
+        }
+    }
+
+    /**
+     * Parses the condition of a step. Returns null if the step has none.
+     *
+     * @param upstreamStepIds ids of the steps that complete before this one starts, which <code>
+     *     executed</code> may refer to
+     */
+    static StepCondition parse(
+            PlexusConfiguration when, String stepId, Collection<String> upstreamStepIds)
+            throws MojoExecutionException {
+        if (when == null || when.getChildCount() == 0) {
+            return null;
+        }
+        List<Check> checks = new ArrayList<>();
+        for (PlexusConfiguration element : when.getChildren()) {
+            String kind = element.getName();
+            String value = element.getValue("").trim();
+            String since = null;
+            if (kind.equals("changed")) {
+                value = element.getChild("files").getValue("").trim();
+                since = element.getChild("since").getValue("").trim();
+                if (since.isEmpty()) {
+                    throw invalid(stepId, "<changed> requires <files> and <since>");
+                }
+            }
+            boolean negated = value.startsWith("!");
+            if (negated) {
+                if (!kind.equals("property") && !kind.equals("executed")) {
+                    throw invalid(stepId, "only <property> and <executed> can be negated with '!'");
+                }
+                value = value.substring(1).trim();
+            }
+            if (value.isEmpty()) {
+                throw invalid(stepId, "<" + kind + "> must not be empty");
+            }
+            switch (kind) {
+                case "exists":
+                case "missing":
+                case "property":
+                case "changed":
+                    break;
+                case "executed":
+                    if (!upstreamStepIds.contains(value)) {
+                        throw invalid(
+                                stepId,
+                                "<executed> must name a step it depends on, directly or through"
+                                        + " the steps before it: "
+                                        + value);
+                    }
+                    break;
+                default:
+                    throw invalid(
+                            stepId,
+                            "unknown condition <"
+                                    + kind
+                                    + ">; expected exists, missing, changed, property or executed");
+            }
+            checks.add(new Check(kind, value, negated, since));
+        }
+        return new StepCondition(checks);
+    }
+
+    private static MojoExecutionException invalid(String stepId, String message) {
+        return new MojoExecutionException("Invalid <when> of step " + stepId + ": " + message);
+    }
+
+    /** True if the condition can be evaluated before any step has run. */
+    boolean isPropertiesOnly() {
+        return propertiesOnly;
+    }
+
+    /**
+     * Evaluates the checks in declaration order. Returns null if all hold, otherwise a description
+     * of the first one that failed.
+     *
+     * @param properties looks up a property, returning null if it is not set
+     * @param stepStatuses looks up the status of an earlier step, returning null if it has not
+     *     completed
+     */
+    String evaluate(
+            Path basedir,
+            Function<String, String> properties,
+            Function<String, String> stepStatuses)
+            throws MojoExecutionException {
+        for (Check check : checks) {
+            String failure;
+            switch (check.kind) {
+                case "exists":
+                    failure =
+                            matches(basedir, check.value) ? null : "no file matches " + check.value;
+                    break;
+                case "missing":
+                    failure = matches(basedir, check.value) ? check.value + " exists" : null;
+                    break;
+                case "changed":
+                    failure =
+                            changedSince(basedir, check.value, check.since)
+                                    ? null
+                                    : check.value + " unchanged since " + check.since;
+                    break;
+                case "property":
+                    failure = checkProperty(check, properties);
+                    break;
+                default:
+                    String status = stepStatuses.apply(check.value);
+                    if (status == null) {
+                        throw new MojoExecutionException(
+                                "The <when> condition refers to step "
+                                        + check.value
+                                        + ", which has not completed yet; declare it in dependsOn");
+                    }
+                    boolean executed = status.equals("EXECUTED") || status.equals("FROM_CACHE");
+                    failure =
+                            executed == check.negated
+                                    ? "step "
+                                            + check.value
+                                            + " was "
+                                            + status.toLowerCase(Locale.ROOT).replace('_', ' ')
+                                    : null;
+            }
+            if (failure != null) {
+                return failure;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks <code>name</code> (set and not "false"), <code>!name</code> (not set or "false") or
+     * <code>name=value</code>.
+     */
+    private static String checkProperty(Check check, Function<String, String> properties) {
+        int equals = check.value.indexOf('=');
+        if (equals > 0) {
+            String name = check.value.substring(0, equals).trim();
+            String expected = check.value.substring(equals + 1).trim();
+            boolean matches = expected.equals(properties.apply(name));
+            return matches != check.negated
+                    ? null
+                    : "property " + name + (check.negated ? " is " : " is not ") + expected;
+        }
+        String value = properties.apply(check.value);
+        boolean set = value != null && !value.equalsIgnoreCase("false");
+        return set != check.negated
+                ? null
+                : "property " + check.value + (set ? " is set" : " is not set");
+    }
+
+    private static boolean matches(Path basedir, String patterns) {
+        if (!hasWildcard(patterns)) {
+            return Files.exists(basedir.resolve(patterns));
+        }
+        return !UpToDateCheck.resolveFiles(basedir, split(patterns)).isEmpty();
+    }
+
+    /** True if the marker is missing or any file matching the patterns is newer than it. */
+    private static boolean changedSince(Path basedir, String patterns, String marker)
+            throws MojoExecutionException {
+        Path markerFile = basedir.resolve(marker);
+        if (!Files.exists(markerFile)) {
+            return true;
+        }
+        try {
+            long markerTime = Files.getLastModifiedTime(markerFile).toMillis();
+            for (String file : UpToDateCheck.resolveFiles(basedir, split(patterns))) {
+                if (Files.getLastModifiedTime(basedir.resolve(file)).toMillis() > markerTime) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new MojoExecutionException(
+                    "Could not compare " + patterns + " with " + marker + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean hasWildcard(String patterns) {
+        return patterns.indexOf('*') >= 0 || patterns.indexOf('?') >= 0 || patterns.contains(",");
+    }
+
+    private static List<String> split(String patterns) {
+        return Arrays.asList(patterns.split(","));
+    }
+}
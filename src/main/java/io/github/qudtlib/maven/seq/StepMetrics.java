@@ -0,0 +1,183 @@
+package io.github.qudtlib.maven.seq;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Resource usage of one step: wall-clock time, CPU time and allocated bytes of the executing
+ * thread, the JVM-wide garbage collections that happened while the step ran, and heap and metaspace
+ * usage before and after it, with the peak heap usage in between. The time spent waiting for locks
+ * is recorded separately and not part of the wall-clock time. Values that the JVM cannot measure
+ * are reported as -1.
+ */
+class StepMetrics {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final int index;
+    private final String stepId;
+    private final String coordinates;
+    private String status = "PENDING";
+    private long resolutionNanos;
+    private long waitNanos;
+    private long wallNanos;
+    private long cpuNanos = -1;
+    private long allocatedBytes = -1;
+    private long gcCount;
+    private long gcTimeMillis;
+    private long heapBeforeBytes = -1;
+    private long heapAfterBytes = -1;
+    private long heapPeakBytes = -1;
+    private long metaspaceBeforeBytes = -1;
+    private long metaspaceAfterBytes = -1;
+
+    private long startWall;
+    private long startCpu;
+    private long startAllocated;
+    private long startGcCount;
+    private long startGcTime;
+    private MemoryUsageTracker.Watermark heapWatermark;
+
+    StepMetrics(int index, String stepId, String coordinates) {
+        this.index = index;
+        this.stepId = stepId;
+        this.coordinates = coordinates;
+    }
+
+    /** Starts measuring on the current thread. */
+    void begin() {
+        metaspaceBeforeBytes = MemoryUsageTracker.metaspaceUsed();
+        heapBeforeBytes = MemoryUsageTracker.heapUsed();
+        heapWatermark = MemoryUsageTracker.start(heapBeforeBytes);
+        startGcCount = totalGcCount();
+        startGcTime = totalGcTimeMillis();
+        startCpu = currentThreadCpuNanos();
+        startAllocated = currentThreadAllocatedBytes();
+        startWall = System.nanoTime();
+    }
+
+    /** Stops measuring; must be called on the thread that called {@link #begin()}. */
+    void end() {
+        wallNanos = System.nanoTime() - startWall;
+        long cpu = currentThreadCpuNanos();
+        cpuNanos = cpu >= 0 && startCpu >= 0 ? cpu - startCpu : -1;
+        long allocated = currentThreadAllocatedBytes();
+        allocatedBytes = allocated >= 0 && startAllocated >= 0 ? allocated - startAllocated : -1;
+        gcCount = totalGcCount() - startGcCount;
+        gcTimeMillis = totalGcTimeMillis() - startGcTime;
+        heapAfterBytes = MemoryUsageTracker.heapUsed();
+        heapPeakBytes = heapWatermark.stop(heapAfterBytes);
+        metaspaceAfterBytes = MemoryUsageTracker.metaspaceUsed();
+    }
+
+    private static long currentThreadCpuNanos() {
+        if (THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled()) {
+            return THREADS.getCurrentThreadCpuTime();
+        }
+        return -1;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported()
+                    && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long totalGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long totalGcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    String getStepId() {
+        return stepId;
+    }
+
+    String getCoordinates() {
+        return coordinates;
+    }
+
+    String getStatus() {
+        return status;
+    }
+
+    void setStatus(String status) {
+        this.status = status;
+    }
+
+    long getResolutionNanos() {
+        return resolutionNanos;
+    }
+
+    void setResolutionNanos(long resolutionNanos) {
+        this.resolutionNanos = resolutionNanos;
+    }
+
+    long getWaitNanos() {
+        return waitNanos;
+    }
+
+    void setWaitNanos(long waitNanos) {
+        this.waitNanos = waitNanos;
+    }
+
+    long getWallNanos() {
+        return wallNanos;
+    }
+
+    long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    long getGcCount() {
+        return gcCount;
+    }
+
+    long getGcTimeMillis() {
+        return gcTimeMillis;
+    }
+
+    long getHeapBeforeBytes() {
+        return heapBeforeBytes;
+    }
+
+    long getHeapAfterBytes() {
+        return heapAfterBytes;
+    }
+
+    long getHeapPeakBytes() {
+        return heapPeakBytes;
+    }
+
+    long getMetaspaceBeforeBytes() {
+        return metaspaceBeforeBytes;
+    }
+
+    long getMetaspaceAfterBytes() {
+        return metaspaceAfterBytes;
+    }
+}
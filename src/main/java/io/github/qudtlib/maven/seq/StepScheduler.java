@@ -0,0 +1,391 @@
+package io.github.qudtlib.maven.seq;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Runs the steps of a sequence as a directed acyclic graph on a bounded worker pool. A step is
+ * started as soon as all of its dependencies have completed; among the ready steps, the one
+ * declared first is started first. With a single worker, or if the steps form a plain chain, they
+ * run on the calling thread. A step whose mojo is not marked thread-safe executes while no other
+ * step of the sequence does.
+ */
+class StepScheduler {
+
+    /** The work to do for one step. */
+    interface StepAction {
+        void run(Node node) throws MojoExecutionException, MojoFailureException;
+    }
+
+    /** One step in the graph, together with its measured start and end time. */
+    static class Node {
+        private final int index;
+        private final String id;
+        private final Set<Node> dependencies = new LinkedHashSet<>();
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        Node(int index, String id) {
+            this.index = index;
+            this.id = id;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        Set<Node> getDependencies() {
+            return dependencies;
+        }
+
+        void addDependency(Node node) {
+            dependencies.add(node);
+        }
+
+        long getDurationNanos() {
+            return endNanos - startNanos;
+        }
+    }
+
+    private final int threads;
+    private final Log log;
+    private long wallClockNanos;
+
+    /** One permit per worker; a step that is not thread-safe executes holding all of them */
+    private final Semaphore executing;
+
+    /** Set while steps of the current run may execute concurrently */
+    private volatile boolean parallel;
+
+    StepScheduler(int threads, Log log) {
+        this.threads = Math.max(1, threads);
+        this.log = log;
+        this.executing = new Semaphore(this.threads, true);
+    }
+
+    /**
+     * Builds the graph for the specified step ids and dependency declarations. A step without
+     * declared dependencies depends on all steps of the preceding block, where a block is either a
+     * single step or a run of consecutive steps sharing the same parallel group. Without any
+     * dependsOn or parallelGroup declarations, this yields the strict declaration order.
+     */
+    static List<Node> buildGraph(List<String> ids, List<String> dependsOn, List<String> groups)
+            throws MojoExecutionException {
+        List<Node> nodes = new ArrayList<>();
+        Map<String, Node> byId = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Node node = new Node(i + 1, ids.get(i));
+            if (byId.put(node.getId(), node) != null) {
+                throw new MojoExecutionException(
+                        "Duplicate step id '"
+                                + node.getId()
+                                + "': step ids must be unique within a sequence");
+            }
+            nodes.add(node);
+        }
+        List<Node> previousBlock = Collections.emptyList();
+        List<Node> currentBlock = new ArrayList<>();
+        String currentGroup = null;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            String group = groups.get(i);
+            boolean sameBlock = group != null && group.equals(currentGroup);
+            if (!sameBlock) {
+                if (!currentBlock.isEmpty()) {
+                    previousBlock = currentBlock;
+                }
+                currentBlock = new ArrayList<>();
+                currentGroup = group;
+            }
+            currentBlock.add(node);
+            String declared = dependsOn.get(i);
+            if (declared != null) {
+                for (String depId : declared.split(",")) {
+                    depId = depId.trim();
+                    if (depId.isEmpty()) {
+                        continue;
+                    }
+                    Node dependency = byId.get(depId);
+                    if (dependency == null) {
+                        throw new MojoExecutionException(
+                                String.format(
+                                        "Step '%s' depends on unknown step '%s'",
+                                        node.getId(), depId));
+                    }
+                    node.addDependency(dependency);
+                }
+            } else {
+                previousBlock.forEach(node::addDependency);
+            }
+        }
+        topologicalOrder(nodes);
+        return nodes;
+    }
+
+    /**
+     * Returns the ids of the steps the node depends on, directly or transitively, which are
+     * guaranteed to have completed when it starts.
+     */
+    static Set<String> getUpstreamIds(Node node) {
+        Set<String> ids = new LinkedHashSet<>();
+        Deque<Node> pending = new ArrayDeque<>(node.getDependencies());
+        while (!pending.isEmpty()) {
+            Node dependency = pending.pop();
+            if (ids.add(dependency.getId())) {
+                pending.addAll(dependency.getDependencies());
+            }
+        }
+        return ids;
+    }
+
+    /** Returns true if the graph is a plain chain in declaration order. */
+    static boolean isSequential(List<Node> nodes) {
+        for (int i = 0; i < nodes.size(); i++) {
+            Set<Node> deps = nodes.get(i).getDependencies();
+            if (i == 0 ? !deps.isEmpty() : !deps.equals(Set.of(nodes.get(i - 1)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Node> topologicalOrder(List<Node> nodes) throws MojoExecutionException {
+        Map<Node, Integer> pending = new HashMap<>();
+        Map<Node, List<Node>> dependents = dependents(nodes);
+        for (Node node : nodes) {
+            pending.put(node, node.getDependencies().size());
+        }
+        PriorityQueue<Node> ready = new PriorityQueue<>(Comparator.comparingInt(Node::getIndex));
+        nodes.stream().filter(n -> n.getDependencies().isEmpty()).forEach(ready::add);
+        List<Node> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            order.add(node);
+            for (Node dependent : dependents.get(node)) {
+                if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (order.size() < nodes.size()) {
+            String cycle =
+                    nodes.stream()
+                            .filter(n -> !order.contains(n))
+                            .map(Node::getId)
+                            .collect(Collectors.joining(", "));
+            throw new MojoExecutionException(
+                    "Step dependencies contain a cycle involving steps: " + cycle);
+        }
+        return order;
+    }
+
+    private static Map<Node, List<Node>> dependents(List<Node> nodes) {
+        Map<Node, List<Node>> dependents = new HashMap<>();
+        for (Node node : nodes) {
+            dependents.putIfAbsent(node, new ArrayList<>());
+            for (Node dep : node.getDependencies()) {
+                dependents.computeIfAbsent(dep, k -> new ArrayList<>()).add(node);
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * Runs all nodes, respecting their dependencies. If a step fails, no further steps are started;
+     * steps that are already running are allowed to finish, then the first failure is rethrown.
+     */
+    void run(List<Node> nodes, StepAction action)
+            throws MojoExecutionException, MojoFailureException {
+        long start = System.nanoTime();
+        try {
+            if (threads == 1 || isSequential(nodes)) {
+                for (Node node : topologicalOrder(nodes)) {
+                    runNode(node, action);
+                }
+            } else {
+                parallel = true;
+                runParallel(nodes, action);
+            }
+        } finally {
+            parallel = false;
+            wallClockNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Called by a step right before its mojo executes. A step that is not thread-safe waits until
+     * no other step executes, and keeps further steps from executing until its permits are
+     * released; other steps only wait for such a step. Returns the permits of this call, which the
+     * caller must release.
+     *
+     * @param description names the mojo of the step in the warning logged when it is not
+     *     thread-safe and would otherwise run concurrently with other steps
+     */
+    Permits beginExecution(String stepId, String description, boolean threadSafe)
+            throws MojoExecutionException {
+        int count = 1;
+        if (!threadSafe && parallel) {
+            log.warn(
+                    String.format(
+                            "%s is not marked thread-safe; running step %s while no other step executes",
+                            description, stepId));
+            count = threads;
+        }
+        try {
+            executing.acquire(count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting to execute step " + stepId);
+        }
+        return new Permits(executing, count);
+    }
+
+    /** Execution permits acquired by one call of {@link #beginExecution}. */
+    static final class Permits {
+        private final Semaphore semaphore;
+        private int count;
+
+        private Permits(Semaphore semaphore, int count) {
+            this.semaphore = semaphore;
+            this.count = count;
+        }
+
+        /** Releases the permits; releasing twice has no effect. */
+        synchronized void release() {
+            semaphore.release(count);
+            count = 0;
+        }
+    }
+
+    private void runParallel(List<Node> nodes, StepAction action)
+            throws MojoExecutionException, MojoFailureException {
+        Map<Node, List<Node>> dependents = dependents(nodes);
+        Map<Node, Integer> pending = new HashMap<>();
+        PriorityQueue<Node> ready = new PriorityQueue<>(Comparator.comparingInt(Node::getIndex));
+        for (Node node : nodes) {
+            pending.put(node, node.getDependencies().size());
+            if (node.getDependencies().isEmpty()) {
+                ready.add(node);
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor =
+                Executors.newFixedThreadPool(
+                        Math.min(threads, nodes.size()),
+                        r -> {
+                            Thread t = new Thread(r, "seq-step-" + threadCount.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+        CompletionService<Node> completion = new ExecutorCompletionService<>(executor);
+        Exception failure = null;
+        int running = 0;
+        try {
+            while (!ready.isEmpty() || running > 0) {
+                while (failure == null && !ready.isEmpty()) {
+                    Node node = ready.poll();
+                    completion.submit(
+                            () -> {
+                                runNode(node, action);
+                                return node;
+                            });
+                    running++;
+                }
+                if (running == 0) {
+                    break;
+                }
+                Future<Node> done = completion.take();
+                running--;
+                try {
+                    Node node = done.get();
+                    for (Node dependent : dependents.get(node)) {
+                        if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                            ready.add(dependent);
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure =
+                                e.getCause() instanceof Exception
+                                        ? (Exception) e.getCause()
+                                        : new MojoExecutionException("Step failed", e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for steps", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure instanceof MojoExecutionException) {
+            throw (MojoExecutionException) failure;
+        } else if (failure instanceof MojoFailureException) {
+            throw (MojoFailureException) failure;
+        } else if (failure != null) {
+            throw new MojoExecutionException(failure.getMessage(), failure);
+        }
+    }
+
+    private void runNode(Node node, StepAction action)
+            throws MojoExecutionException, MojoFailureException {
+        if (log.isDebugEnabled()) {
+            log.debug(
+                    String.format(
+                            "Starting step %s on thread %s",
+                            node.getId(), Thread.currentThread().getName()));
+        }
+        node.startNanos = System.nanoTime();
+        try {
+            action.run(node);
+        } finally {
+            node.endNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns the critical path: the chain of dependent steps with the largest total duration,
+     * which bounds the wall-clock time of the sequence regardless of the number of workers.
+     */
+    List<Node> criticalPath(List<Node> nodes) throws MojoExecutionException {
+        Map<Node, Long> finish = new HashMap<>();
+        Map<Node, Node> predecessor = new HashMap<>();
+        Node last = null;
+        for (Node node : topologicalOrder(nodes)) {
+            Node slowest = null;
+            for (Node dep : node.getDependencies()) {
+                if (slowest == null || finish.get(dep) > finish.get(slowest)) {
+                    slowest = dep;
+                }
+            }
+            predecessor.put(node, slowest);
+            long earliestStart = slowest == null ? 0 : finish.get(slowest);
+            finish.put(node, earliestStart + node.getDurationNanos());
+            if (last == null || finish.get(node) > finish.get(last)) {
+                last = node;
+            }
+        }
+        LinkedList<Node> path = new LinkedList<>();
+        for (Node n = last; n != null; n = predecessor.get(n)) {
+            path.addFirst(n);
+        }
+        return path;
+    }
+
+    long getWallClockNanos() {
+        return wallClockNanos;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+}
@@ -0,0 +1,248 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.*;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Enforces step timeouts. A step with a timeout runs on its own thread while the calling thread
+ * waits for it; when the timeout expires, a single watchdog thread writes a thread dump, interrupts
+ * the step and fails it, so a hung step cannot block the build. A soft limit only logs a warning.
+ */
+class StepWatchdog implements AutoCloseable {
+
+    private final Path dumpDirectory;
+    private final Log log;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    StepWatchdog(Path dumpDirectory, Log log) {
+        this.dumpDirectory = dumpDirectory;
+        this.log = log;
+        // the thread is only started when the first limit is scheduled
+        this.scheduler =
+                new ScheduledThreadPoolExecutor(
+                        1,
+                        // may be started by a step, whose log and class loader it must not keep
+                        r -> LogCapture.detachedThread(r, "seq-watchdog"));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Runs the action, warning after <code>warnAfterNanos</code> and failing after <code>
+     * timeoutNanos</code> (0 disables either limit). Without a timeout, the action runs on the
+     * calling thread.
+     *
+     * @param limit describes the timeout in the failure message
+     */
+    void run(
+            String stepId,
+            long timeoutNanos,
+            String limit,
+            long warnAfterNanos,
+            Callable<Void> action)
+            throws Exception {
+        long start = System.nanoTime();
+        ScheduledFuture<?> warning =
+                warnAfterNanos > 0
+                        ? scheduler.schedule(
+                                () ->
+                                        log.warn(
+                                                String.format(
+                                                        "Step %s is still running after %s",
+                                                        stepId,
+                                                        SeqMojo.formatDuration(
+                                                                elapsedMillis(start)))),
+                                warnAfterNanos,
+                                TimeUnit.NANOSECONDS)
+                        : null;
+        try {
+            if (timeoutNanos <= 0) {
+                action.call();
+            } else {
+                runWithTimeout(stepId, timeoutNanos, limit, start, action);
+            }
+        } finally {
+            if (warning != null) {
+                warning.cancel(false);
+            }
+        }
+    }
+
+    private void runWithTimeout(
+            String stepId, long timeoutNanos, String limit, long start, Callable<Void> action)
+            throws Exception {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletableFuture<Void> workerEnd = new CompletableFuture<>();
+        Thread worker =
+                new Thread(
+                        () -> {
+                            try {
+                                action.call();
+                                result.complete(null);
+                            } catch (Throwable t) {
+                                result.completeExceptionally(t);
+                            } finally {
+                                workerEnd.complete(null);
+                            }
+                        },
+                        "seq-step-" + stepId);
+        worker.setDaemon(true);
+        worker.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+        ScheduledFuture<?> timeout =
+                scheduler.schedule(
+                        () -> {
+                            if (result.isDone()) {
+                                return;
+                            }
+                            long elapsed = elapsedMillis(start);
+                            Path dump = writeThreadDump(stepId);
+                            // fail the step before interrupting it, as an interrupted mojo may
+                            // still complete normally
+                            result.completeExceptionally(
+                                    new StepTimeoutException(
+                                            String.format(
+                                                    "Step %s exceeded %s after %s and was interrupted%s",
+                                                    stepId,
+                                                    limit,
+                                                    SeqMojo.formatDuration(elapsed),
+                                                    dump != null
+                                                            ? "; thread dump written to " + dump
+                                                            : ""),
+                                            workerEnd));
+                            worker.interrupt();
+                        },
+                        timeoutNanos,
+                        TimeUnit.NANOSECONDS);
+        worker.start();
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        } catch (InterruptedException e) {
+            worker.interrupt();
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for step " + stepId, e);
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    private Path writeThreadDump(String stepId) {
+        try {
+            Files.createDirectories(dumpDirectory);
+            Path file =
+                    dumpDirectory.resolve(
+                            SeqMojo.toFileName(stepId)
+                                    + "-"
+                                    + Instant.now().toString().replace(':', '-')
+                                    + ".txt");
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (ThreadInfo thread :
+                        ManagementFactory.getThreadMXBean().dumpAllThreads(true, true)) {
+                    writeThread(writer, thread);
+                }
+            }
+            return file;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write thread dump: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Like {@link ThreadInfo#toString()}, but with the complete stack. */
+    private static void writeThread(Writer writer, ThreadInfo thread) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append('"')
+                .append(thread.getThreadName())
+                .append("\" ")
+                .append(thread.isDaemon() ? "daemon " : "")
+                .append("Id=")
+                .append(thread.getThreadId())
+                .append(' ')
+                .append(thread.getThreadState());
+        if (thread.getLockName() != null) {
+            sb.append(" on ").append(thread.getLockName());
+        }
+        if (thread.getLockOwnerName() != null) {
+            sb.append(" owned by \"")
+                    .append(thread.getLockOwnerName())
+                    .append("\" Id=")
+                    .append(thread.getLockOwnerId());
+        }
+        sb.append('\n');
+        StackTraceElement[] stack = thread.getStackTrace();
+        MonitorInfo[] monitors = thread.getLockedMonitors();
+        for (int i = 0; i < stack.length; i++) {
+            sb.append("\tat ").append(stack[i]).append('\n');
+            for (MonitorInfo monitor : monitors) {
+                if (monitor.getLockedStackDepth() == i) {
+                    sb.append("\t-  locked ").append(monitor).append('\n');
+                }
+            }
+        }
+        LockInfo[] synchronizers = thread.getLockedSynchronizers();
+        if (synchronizers.length > 0) {
+            sb.append("\n\tLocked synchronizers:\n");
+            for (LockInfo synchronizer : synchronizers) {
+                sb.append("\t- ").append(synchronizer).append('\n');
+            }
+        }
+        writer.write(sb.append('\n').toString());
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /** Thrown when a step exceeds its timeout or the time budget of the sequence. */
+    static class StepTimeoutException extends MojoExecutionException {
+        private static final long serialVersionUID = 1L;
+
+        /** Completed when the interrupted step thread ends, null if no step was started */
+        private final transient CompletableFuture<Void> stepEnd;
+
+        StepTimeoutException(String message) {
+            this(message, null);
+        }
+
+        StepTimeoutException(String message, CompletableFuture<Void> stepEnd) {
+            super(message);
+            this.stepEnd = stepEnd;
+        }
+
+        /**
+         * Runs the action once the interrupted step has actually ended, on its thread, or at once
+         * if it has ended already. A step that ignores the interrupt never ends.
+         */
+        void whenStepEnds(Runnable action) {
+            if (stepEnd == null) {
+                action.run();
+            } else {
+                stepEnd.whenComplete((ignored, t) -> action.run());
+            }
+        }
+
+        boolean isStepRunning() {
+            return stepEnd != null && !stepEnd.isDone();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Durations of past step executions, stored in an append-only, tab-separated file that can be
+ * shared by all projects and concurrent builds. Each line holds the time of the execution, the key
+ * of the step (project, sequence label, step id and plugin coordinates) and its duration. Only the
+ * last <code>window</code> durations per step are kept; the file is compacted when it has grown to
+ * several times that size.
+ */
+class TimingHistory {
+
+    /** Number of recorded executions a step needs before it is compared against its baseline. */
+    static final int MIN_SAMPLES = 5;
+
+    private static final int COMPACT_FACTOR = 4;
+
+    private final Path file;
+    private final int window;
+
+    /** Recent executions per step as {time, duration} */
+    private final Map<String, Deque<long[]>> durations = new HashMap<>();
+
+    private final List<String> pending = new ArrayList<>();
+
+    private TimingHistory(Path file, int window) {
+        this.file = file;
+        this.window = Math.max(1, window);
+    }
+
+    /** Reads the history file; a missing file is an empty history. */
+    static TimingHistory load(Path file, int window) throws IOException {
+        TimingHistory history = new TimingHistory(file, window);
+        // FileLock is held by the JVM, so threads of one JVM must not lock the file concurrently
+        synchronized (TimingHistory.class) {
+            if (!Files.exists(file)) {
+                return history;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+                try {
+                    history.read(channel);
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+        return history;
+    }
+
+    private int read(FileChannel channel) throws IOException {
+        durations.clear();
+        int lines = 0;
+        BufferedReader reader =
+                new BufferedReader(
+                        new InputStreamReader(
+                                Channels.newInputStream(channel), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.split("\t");
+            if (fields.length != 3) {
+                continue;
+            }
+            try {
+                add(fields[1], Long.parseLong(fields[0]), Long.parseLong(fields[2]));
+                lines++;
+            } catch (NumberFormatException e) {
+                // ignore damaged lines
+            }
+        }
+        return lines;
+    }
+
+    private void add(String key, long time, long nanos) {
+        Deque<long[]> recent = durations.computeIfAbsent(key, k -> new ArrayDeque<>());
+        recent.addLast(new long[] {time, nanos});
+        if (recent.size() > window) {
+            recent.removeFirst();
+        }
+    }
+
+    static String key(String project, String label, String stepId, String coordinates) {
+        return String.join("|", project, label == null ? "" : label, stepId, coordinates)
+                .replace('\t', ' ')
+                .replace('\n', ' ');
+    }
+
+    /**
+     * Returns the median of the recorded durations of the step, or -1 if fewer than {@link
+     * #MIN_SAMPLES} executions have been recorded.
+     */
+    synchronized long getMedianNanos(String key) {
+        return getMedianNanos(key, MIN_SAMPLES);
+    }
+
+    /**
+     * Returns the median of however many durations of the step have been recorded, as an estimate
+     * of its cost, or -1 if none have.
+     */
+    synchronized long getEstimateNanos(String key) {
+        return getMedianNanos(key, 1);
+    }
+
+    private long getMedianNanos(String key, int minSamples) {
+        Deque<long[]> recent = durations.get(key);
+        if (recent == null || recent.size() < minSamples) {
+            return -1;
+        }
+        long[] sorted = recent.stream().mapToLong(entry -> entry[1]).sorted().toArray();
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    synchronized int getSampleCount(String key) {
+        Deque<long[]> recent = durations.get(key);
+        return recent == null ? 0 : recent.size();
+    }
+
+    /** Records a duration, to be appended to the file by {@link #save()}. */
+    synchronized void record(String key, long nanos) {
+        pending.add(System.currentTimeMillis() + "\t" + key + "\t" + nanos + "\n");
+    }
+
+    /** Appends the recorded durations to the file, compacting it if it has grown too large. */
+    synchronized void save() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        synchronized (TimingHistory.class) {
+            try (FileChannel channel =
+                    FileChannel.open(
+                            file,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.READ,
+                            StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    channel.position(channel.size());
+                    channel.write(
+                            ByteBuffer.wrap(
+                                    String.join("", pending).getBytes(StandardCharsets.UTF_8)));
+                    pending.clear();
+                    channel.position(0);
+                    int lines = read(channel);
+                    int retained = durations.values().stream().mapToInt(Deque::size).sum();
+                    if (lines > COMPACT_FACTOR * retained) {
+                        compact(channel);
+                    }
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file in place with the retained durations only. The file is not replaced, so
+     * builds waiting for its lock keep a valid file handle.
+     */
+    private void compact(FileChannel channel) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Deque<long[]>> entry : durations.entrySet()) {
+            for (long[] execution : entry.getValue()) {
+                sb.append(execution[0])
+                        .append('\t')
+                        .append(entry.getKey())
+                        .append('\t')
+                        .append(execution[1])
+                        .append('\n');
+            }
+        }
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
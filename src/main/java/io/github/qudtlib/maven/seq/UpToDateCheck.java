@@ -0,0 +1,219 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Decides whether a step with declared inputs can be skipped because neither its inputs, nor its
+ * plugin version, nor its merged configuration have changed since its last successful execution.
+ *
+ * <p>The state of the last successful execution is kept in a properties file that records the
+ * overall fingerprint and, for each input file, its size, modification time and content hash. Files
+ * whose size and modification time are unchanged are not hashed again; all other files are hashed
+ * in parallel.
+ */
+class UpToDateCheck {
+
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String FILE_PREFIX = "file.";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path basedir;
+    private final Path stateFile;
+    private final List<String> inputs;
+    private final List<String> outputs;
+    private final Properties currentState = new Properties();
+    private String fingerprint;
+
+    UpToDateCheck(Path basedir, Path stateFile, List<String> inputs, List<String> outputs) {
+        this.basedir = basedir;
+        this.stateFile = stateFile;
+        this.inputs = inputs;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Computes the fingerprint of the step and compares it with the recorded state. Returns true if
+     * the fingerprints match and all declared outputs exist.
+     */
+    boolean isUpToDate(String pluginId, Xpp3Dom configuration) throws IOException {
+        Properties previousState = loadState();
+        fingerprint = computeFingerprint(pluginId, configuration, previousState);
+        if (!fingerprint.equals(previousState.getProperty(FINGERPRINT))) {
+            return false;
+        }
+        if (outputs != null) {
+            for (String output : outputs) {
+                if (resolveFiles(basedir, List.of(output)).isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Records the fingerprint computed by {@link #isUpToDate} as the state of a successful run. */
+    void recordSuccess() throws IOException {
+        if (fingerprint == null) {
+            return;
+        }
+        currentState.setProperty(FINGERPRINT, fingerprint);
+        Files.createDirectories(stateFile.getParent());
+        Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            currentState.store(writer, "seq-maven-plugin step state");
+        }
+        Files.move(
+                tmp,
+                stateFile,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    private Properties loadState() {
+        Properties state = new Properties();
+        if (Files.isRegularFile(stateFile)) {
+            try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                state.load(reader);
+            } catch (IOException | IllegalArgumentException e) {
+                // a corrupt state file just means the step is out of date
+                state.clear();
+            }
+        }
+        return state;
+    }
+
+    private String computeFingerprint(
+            String pluginId, Xpp3Dom configuration, Properties previousState) throws IOException {
+        List<String> files = resolveFiles(basedir, inputs);
+        List<String[]> entries;
+        try {
+            entries =
+                    files.parallelStream()
+                            .map(file -> fileEntry(file, previousState))
+                            .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        MessageDigest digest = newDigest();
+        update(digest, pluginId);
+        update(digest, String.valueOf(configuration));
+        for (String[] entry : entries) {
+            currentState.setProperty(FILE_PREFIX + entry[0], entry[1]);
+            update(digest, entry[0]);
+            update(digest, entry[1].substring(entry[1].lastIndexOf(',') + 1));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the relative path of the file and its "size,mtime,hash" record, reusing the previous
+     * hash if size and modification time are unchanged.
+     */
+    private String[] fileEntry(String relativePath, Properties previousState) {
+        try {
+            Path file = basedir.resolve(relativePath);
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            String stat = attributes.size() + "," + attributes.lastModifiedTime().toMillis();
+            String previous = previousState.getProperty(FILE_PREFIX + relativePath);
+            if (previous != null && previous.startsWith(stat + ",")) {
+                return new String[] {relativePath, previous};
+            }
+            return new String[] {relativePath, stat + "," + hash(file)};
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns whether the path, relative to the base directory and separated by '/', matches one of
+     * the Ant-style patterns, where a pattern naming a directory matches all files below it. The
+     * file need not exist any more.
+     */
+    static boolean matches(Path basedir, List<String> patterns, String relativePath) {
+        if (patterns == null) {
+            return false;
+        }
+        for (String pattern : patterns) {
+            String trimmed = pattern.trim().replace('\\', '/');
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (trimmed.endsWith("/") || Files.isDirectory(basedir.resolve(trimmed))) {
+                trimmed = (trimmed.endsWith("/") ? trimmed : trimmed + "/") + "**";
+            }
+            if (SelectorUtils.matchPath(trimmed, relativePath, "/", true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the sorted paths, relative to the base directory and separated by '/', of the files
+     * matching the specified Ant-style patterns. A pattern naming a directory matches all files
+     * below it.
+     */
+    static List<String> resolveFiles(Path basedir, List<String> patterns) {
+        if (patterns == null || patterns.isEmpty() || !Files.isDirectory(basedir)) {
+            return List.of();
+        }
+        String[] includes =
+                patterns.stream()
+                        .map(String::trim)
+                        .filter(p -> !p.isEmpty())
+                        .map(p -> Files.isDirectory(basedir.resolve(p)) ? p + "/**" : p)
+                        .toArray(String[]::new);
+        if (includes.length == 0) {
+            return List.of();
+        }
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(basedir.toFile());
+        scanner.setIncludes(includes);
+        scanner.scan();
+        return Arrays.stream(scanner.getIncludedFiles())
+                .map(f -> f.replace(File.separatorChar, '/'))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.qudtlib.maven.seq;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Runs a sequence and keeps running it while its inputs change: after the first run, the declared
+ * <code>inputs</code> of the steps are watched, and each change runs the steps from the first one
+ * whose inputs changed to the end of the sequence again. The steps are resolved once and their
+ * descriptors and plugin realms stay loaded, so a round costs little more than the goals. Runs
+ * until interrupted, e.g. with Ctrl+C. Uses the configuration of the <code>seq:run</code> execution
+ * it is invoked for, e.g. <code>mvn seq:watch@my-sequence</code>.
+ */
+@Mojo(name = "watch", defaultPhase = LifecyclePhase.NONE, threadSafe = true)
+public class WatchMojo extends SeqMojo {
+
+    /** Time without further changes to wait for before the steps run again, e.g. 300ms or 2s */
+    @Parameter(defaultValue = "300ms", property = "seq.watchQuietPeriod")
+    private String watchQuietPeriod;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        watch(ParameterValues.parseDuration(watchQuietPeriod, "watchQuietPeriod"));
+    }
+}
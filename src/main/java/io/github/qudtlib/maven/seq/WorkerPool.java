@@ -0,0 +1,297 @@
+package io.github.qudtlib.maven.seq;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Worker JVMs for forked steps, shared by all sequences in this JVM. A worker is started on demand,
+ * used by one step at a time and returned to the pool afterwards, so later steps and modules do not
+ * pay for JVM and Maven startup again. Workers are retired after a number of executions or when
+ * their live heap exceeds a limit, and are stopped when the Maven JVM exits.
+ */
+class WorkerPool {
+
+    private static final WorkerPool INSTANCE = new WorkerPool();
+
+    /** Idle workers by the command line that started them */
+    private final Map<List<String>, Deque<Worker>> idle = new HashMap<>();
+
+    private final Set<Worker> all = Collections.synchronizedSet(new HashSet<>());
+
+    private boolean shutdownHookAdded;
+
+    private WorkerPool() {}
+
+    /**
+     * Stops all workers when the Maven JVM exits. Added with the first worker, since the plugin's
+     * class realm may already be closed at exit and the hook can then only use loaded classes.
+     */
+    private void addShutdownHook() {
+        synchronized (all) {
+            if (shutdownHookAdded) {
+                return;
+            }
+            shutdownHookAdded = true;
+        }
+        Runtime.getRuntime()
+                .addShutdownHook(
+                        new Thread(
+                                () -> {
+                                    synchronized (all) {
+                                        all.forEach(Worker::stop);
+                                    }
+                                },
+                                "seq-worker-shutdown"));
+    }
+
+    static WorkerPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Runs the request on an idle worker started with the same command line, or on a new one, and
+     * copies the worker's output to <code>output</code>. Returns Maven's exit code. The worker is
+     * retired afterwards if it has reached <code>
+     * maxExecutions</code> or its live heap exceeds <code>maxMemoryBytes</code> (0 disables either
+     * limit).
+     */
+    int run(
+            List<String> command,
+            Path request,
+            PrintStream output,
+            int maxExecutions,
+            long maxMemoryBytes,
+            String stepId,
+            Log log)
+            throws MojoExecutionException {
+        Worker worker = borrow(command, log);
+        boolean healthy = false;
+        try {
+            Worker.Result result = worker.run(request, output);
+            healthy = true;
+            worker.executions++;
+            if (maxExecutions > 0 && worker.executions >= maxExecutions) {
+                log.debug(
+                        "Retiring worker " + worker.id + " after " + worker.executions + " steps");
+                healthy = false;
+            } else if (maxMemoryBytes > 0 && result.liveHeapBytes > maxMemoryBytes) {
+                log.debug(
+                        String.format(
+                                "Retiring worker %d using %d MB of heap after step %s",
+                                worker.id, result.liveHeapBytes >> 20, stepId));
+                healthy = false;
+            }
+            return result.exitCode;
+        } finally {
+            if (healthy) {
+                release(command, worker);
+            } else {
+                worker.stop();
+                all.remove(worker);
+            }
+        }
+    }
+
+    private Worker borrow(List<String> command, Log log) throws MojoExecutionException {
+        synchronized (idle) {
+            Deque<Worker> workers = idle.get(command);
+            if (workers != null && !workers.isEmpty()) {
+                return workers.pop();
+            }
+        }
+        Worker worker = Worker.start(command, log);
+        addShutdownHook();
+        all.add(worker);
+        return worker;
+    }
+
+    private void release(List<String> command, Worker worker) {
+        synchronized (idle) {
+            idle.computeIfAbsent(command, k -> new ArrayDeque<>()).push(worker);
+        }
+    }
+
+    /** A worker JVM running {@link ForkedStepWorker}. */
+    private static class Worker {
+        private static int nextId = 1;
+
+        private final int id;
+        private final Process process;
+        private final Writer requests;
+        private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        private final Semaphore outputEnd = new Semaphore(0);
+        private final PrintStream defaultOutput = System.err;
+        private volatile PrintStream output = defaultOutput;
+        private int executions;
+
+        private Worker(int id, Process process) {
+            this.id = id;
+            this.process = process;
+            this.requests =
+                    new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+            // read responses on a separate thread, so waiting for them can be interrupted
+            Thread reader =
+                    LogCapture.detachedThread(
+                            () -> {
+                                try (BufferedReader in =
+                                        new BufferedReader(
+                                                new InputStreamReader(
+                                                        process.getInputStream(),
+                                                        StandardCharsets.UTF_8))) {
+                                    String line;
+                                    while ((line = in.readLine()) != null) {
+                                        responses.add(line);
+                                    }
+                                } catch (IOException e) {
+                                    // the worker has stopped
+                                }
+                                responses.add("EOF");
+                            },
+                            "seq-worker-" + id);
+            reader.start();
+            // copy the worker's output to the step currently using it
+            Thread pump =
+                    LogCapture.detachedThread(
+                            () -> {
+                                try (BufferedReader in =
+                                        new BufferedReader(
+                                                new InputStreamReader(process.getErrorStream()))) {
+                                    String line;
+                                    while ((line = in.readLine()) != null) {
+                                        if (line.equals(ForkedStepWorker.OUTPUT_END)) {
+                                            outputEnd.release();
+                                        } else {
+                                            output.println(line);
+                                        }
+                                    }
+                                } catch (IOException e) {
+                                    // the worker has stopped
+                                }
+                                outputEnd.release();
+                            },
+                            "seq-worker-" + id + "-output");
+            pump.start();
+        }
+
+        static Worker start(List<String> command, Log log) throws MojoExecutionException {
+            int id;
+            synchronized (Worker.class) {
+                id = nextId++;
+            }
+            log.debug("Starting worker " + id + ": " + String.join(" ", command));
+            Process process;
+            try {
+                process = new ProcessBuilder(command).start();
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to start worker JVM", e);
+            }
+            Worker worker = new Worker(id, process);
+            String ready = worker.await();
+            if (!"READY".equals(ready)) {
+                worker.stop();
+                throw new MojoExecutionException(
+                        "Worker JVM did not start (exit code "
+                                + (process.isAlive() ? "none" : process.exitValue())
+                                + "); see its output above");
+            }
+            return worker;
+        }
+
+        Result run(Path request, PrintStream stepOutput) throws MojoExecutionException {
+            output = stepOutput;
+            String response;
+            try {
+                try {
+                    requests.write("RUN " + request.toAbsolutePath() + "\n");
+                    requests.flush();
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Worker JVM " + id + " is not responding", e);
+                }
+                response = await();
+                // the output is read from another pipe and may still be in transit
+                outputEnd.acquire();
+            } catch (InterruptedException e) {
+                stop();
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while waiting for worker JVM " + id);
+            } finally {
+                output = defaultOutput;
+            }
+            String[] fields = response.split(" ");
+            if (fields.length != 3 || !fields[0].equals("DONE")) {
+                throw new MojoExecutionException("Worker JVM " + id + " stopped unexpectedly");
+            }
+            return new Result(Integer.parseInt(fields[1]), Long.parseLong(fields[2]));
+        }
+
+        private String await() throws MojoExecutionException {
+            try {
+                return responses.take();
+            } catch (InterruptedException e) {
+                // the step was cancelled, and the worker may be stuck in it
+                stop();
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while waiting for worker JVM " + id);
+            }
+        }
+
+        void stop() {
+            if (!process.isAlive()) {
+                return;
+            }
+            try {
+                requests.write("EXIT\n");
+                requests.flush();
+                if (process.waitFor(5, TimeUnit.SECONDS)) {
+                    return;
+                }
+            } catch (IOException e) {
+                // fall through to destroy
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            process.destroyForcibly();
+        }
+
+        private static class Result {
+            private final int exitCode;
+            private final long liveHeapBytes;
+
+            Result(int exitCode, long liveHeapBytes) {
+                this.exitCode = exitCode;
+                this.liveHeapBytes = liveHeapBytes;
+            }
+        }
+    }
+
+    /** Writes a request file for {@link ForkedStepWorker}. */
+    static void writeRequest(
+            Path file,
+            String workingDirectory,
+            String multiModuleProjectDirectory,
+            List<String> mavenArgs,
+            Properties step)
+            throws IOException {
+        Properties request = new Properties();
+        request.putAll(step);
+        request.setProperty("workingDirectory", workingDirectory);
+        request.setProperty("multiModuleProjectDirectory", multiModuleProjectDirectory);
+        request.setProperty("args", String.valueOf(mavenArgs.size()));
+        for (int i = 0; i < mavenArgs.size(); i++) {
+            request.setProperty("arg." + i, mavenArgs.get(i));
+        }
+        Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            request.store(writer, null);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.jupiter.api.Test;
+
+class AggregateSequenceTest {
+
+    @Test
+    void modulesMayShareAnIdenticalOrUndeclaredPlugin() {
+        assertNull(AggregateSequence.getPluginMismatch(plugin("1.0"), plugin("1.0"), false, null));
+        assertNull(AggregateSequence.getPluginMismatch(null, null, true, null));
+        assertNull(AggregateSequence.getPluginMismatch(plugin("1.0"), plugin("2.0"), true, null));
+    }
+
+    @Test
+    void rejectsAnotherVersionUnlessTheStepSetsOne() {
+        assertEquals(
+                "another version (2.0)",
+                AggregateSequence.getPluginMismatch(plugin("1.0"), plugin("2.0"), false, null));
+    }
+
+    @Test
+    void rejectsOtherPluginDependencies() {
+        Plugin module = plugin("1.0");
+        Dependency dependency = new Dependency();
+        dependency.setGroupId("g");
+        dependency.setArtifactId("extra");
+        dependency.setVersion("1");
+        module.addDependency(dependency);
+        assertEquals(
+                "other dependencies",
+                AggregateSequence.getPluginMismatch(plugin("1.0"), module, false, null));
+    }
+
+    @Test
+    void rejectsAnotherConfigurationOfTheNamedExecution() {
+        Plugin root = plugin("1.0");
+        Plugin module = plugin("1.0");
+        root.addExecution(execution("gen", "a"));
+        module.addExecution(execution("gen", "b"));
+        assertEquals(
+                "another configuration of execution gen",
+                AggregateSequence.getPluginMismatch(root, module, false, "gen"));
+        assertNull(AggregateSequence.getPluginMismatch(root, module, false, null));
+    }
+
+    private static Plugin plugin(String version) {
+        Plugin plugin = new Plugin();
+        plugin.setGroupId("g");
+        plugin.setArtifactId("p");
+        plugin.setVersion(version);
+        return plugin;
+    }
+
+    private static PluginExecution execution(String id, String value) {
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+        Xpp3Dom child = new Xpp3Dom("value");
+        child.setValue(value);
+        configuration.addChild(child);
+        PluginExecution execution = new PluginExecution();
+        execution.setId(id);
+        execution.setConfiguration(configuration);
+        return execution;
+    }
+}
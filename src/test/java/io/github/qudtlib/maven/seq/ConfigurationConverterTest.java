@@ -0,0 +1,153 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.util.Map;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.junit.jupiter.api.Test;
+
+class ConfigurationConverterTest {
+
+    @Test
+    void mergesLikePlexusUtils() throws Exception {
+        assertMergesLikePlexusUtils(
+                "<configuration><a>1</a><b/><c x='1'/></configuration>",
+                "<configuration><b>2</b><c x='2' y='3'>4</c><d>5</d></configuration>");
+        assertMergesLikePlexusUtils(
+                "<configuration><list><item>1</item><item/></list></configuration>",
+                "<configuration><list><item>2</item><item>3</item><item>4</item></list>"
+                        + "<other><deep><deeper>6</deeper></deep></other></configuration>");
+        assertMergesLikePlexusUtils(
+                "<configuration><a><b>1</b></a><c>2</c><a><b/></a></configuration>",
+                "<configuration><a><b>3</b><d>4</d></a><a><b>5</b></a><c/></configuration>");
+    }
+
+    @Test
+    void mergesCombineDirectivesLikePlexusUtils() throws Exception {
+        assertMergesLikePlexusUtils(
+                "<configuration><list combine.children='append'><item>1</item></list></configuration>",
+                "<configuration><list><item>2</item></list><x>3</x></configuration>");
+        assertMergesLikePlexusUtils(
+                "<configuration><a combine.self='override'><b>1</b></a><c/></configuration>",
+                "<configuration><a><b>2</b><d>3</d></a><c>4</c></configuration>");
+        assertMergesLikePlexusUtils(
+                "<configuration><a><b>1</b></a></configuration>",
+                "<configuration><a combine.children='append'><b>2</b></a></configuration>");
+    }
+
+    @Test
+    void mergesWithExecutionConfigurationLikePlexusUtils() throws Exception {
+        Xpp3Dom step = parse("<configuration><a>1</a><list><item>x</item></list></configuration>");
+        Xpp3Dom execution =
+                parse("<configuration><a>2</a><b>3</b><list><item>y</item></list></configuration>");
+        assertEquals(
+                Xpp3Dom.mergeXpp3Dom(new Xpp3Dom(step), new Xpp3Dom(execution)),
+                ConfigurationConverter.mergeWithExecutionConfiguration(step, execution));
+    }
+
+    @Test
+    void mergeDoesNotModifyItsArguments() throws Exception {
+        Xpp3Dom dominant = parse("<configuration><a><b>1</b></a><c/></configuration>");
+        Xpp3Dom recessive = parse("<configuration><a><d>2</d></a><c>3</c><e>4</e></configuration>");
+        String dominantBefore = dominant.toString();
+        String recessiveBefore = recessive.toString();
+        Xpp3Dom merged = ConfigurationConverter.mergeWithDefaults(dominant, recessive);
+        assertEquals(dominantBefore, dominant.toString());
+        assertEquals(recessiveBefore, recessive.toString());
+        // every node of the result belongs to the result
+        assertSame(merged, merged.getChild("e").getParent());
+        assertSame(merged.getChild("a"), merged.getChild("a").getChild("b").getParent());
+        assertSame(recessive, recessive.getChild("e").getParent());
+        assertSame(dominant.getChild("a"), dominant.getChild("a").getChild("b").getParent());
+    }
+
+    @Test
+    void modifyingAMergedTreeLeavesItsInputsUnchanged() throws Exception {
+        Xpp3Dom dominant = parse("<configuration><a><b>1</b></a><c/></configuration>");
+        Xpp3Dom recessive = parse("<configuration><a><d>2</d></a><c>3</c><e>4</e></configuration>");
+        String dominantBefore = dominant.toString();
+        String recessiveBefore = recessive.toString();
+        for (Xpp3Dom merged :
+                new Xpp3Dom[] {
+                    ConfigurationConverter.mergeWithDefaults(dominant, recessive),
+                    ConfigurationConverter.mergeWithDefaults(dominant, null),
+                    ConfigurationConverter.mergeWithDefaults(null, recessive),
+                    ConfigurationConverter.mergeWithExecutionConfiguration(dominant, recessive)
+                }) {
+            merged.setAttribute("x", "1");
+            merged.getChild("a").getChild(0).setValue("changed");
+            merged.getChild("a").addChild(new Xpp3Dom("added"));
+            merged.getChild("c").setValue("changed");
+            merged.removeChild(0);
+            merged.addChild(new Xpp3Dom("added"));
+            assertEquals(dominantBefore, dominant.toString());
+            assertEquals(recessiveBefore, recessive.toString());
+        }
+    }
+
+    @Test
+    void mergeCopiesTheDominantTreeIfNothingIsAdded() throws Exception {
+        Xpp3Dom dominant = parse("<configuration><a>1</a><b><c>2</c></b></configuration>");
+        Xpp3Dom recessive = parse("<configuration><a>3</a><b><c>4</c></b></configuration>");
+        assertEquals(dominant, ConfigurationConverter.mergeWithDefaults(dominant, recessive));
+        assertNotSame(dominant, ConfigurationConverter.mergeWithDefaults(dominant, recessive));
+        assertEquals(dominant, ConfigurationConverter.mergeWithDefaults(dominant, null));
+        assertEquals(
+                recessive, ConfigurationConverter.mergeWithExecutionConfiguration(null, recessive));
+        assertNull(ConfigurationConverter.mergeWithDefaults(null, null));
+    }
+
+    @Test
+    void substitutesKnownPlaceholdersOnly() throws Exception {
+        Xpp3Dom dom =
+                parse(
+                        "<configuration><a>@{os}-@{arch}</a><b x='@{os}'/>"
+                                + "<c>@{argLine}</c><d><e>fixed</e></d></configuration>");
+        String before = dom.toString();
+        Xpp3Dom substituted =
+                ConfigurationConverter.substitute(dom, Map.of("os", "linux", "arch", "x64"));
+        assertEquals(before, dom.toString());
+        assertEquals("linux-x64", substituted.getChild("a").getValue());
+        assertEquals("linux", substituted.getChild("b").getAttribute("x"));
+        assertEquals("@{argLine}", substituted.getChild("c").getValue());
+        assertEquals(dom.getChild("d"), substituted.getChild("d"));
+        assertSame(substituted, substituted.getChild("d").getParent());
+        assertSame(dom, ConfigurationConverter.substitute(dom, Map.of("other", "1")));
+    }
+
+    @Test
+    void serializedConfigurationParsesToAnEqualTree() throws Exception {
+        Xpp3Dom configuration =
+                parse(
+                        "<configuration><empty/><blank>   </blank><a x='1'>v</a>"
+                                + "<list><item>1</item><item/></list></configuration>");
+        Xpp3Dom roundTrip =
+                ConfigurationConverter.parse(ConfigurationConverter.serialize(configuration));
+        assertEquals(configuration, roundTrip);
+        assertNull(roundTrip.getChild("empty").getValue());
+        assertEquals(
+                configuration.getChild("blank").getValue(), roundTrip.getChild("blank").getValue());
+        assertNull(roundTrip.getChild("list").getChild(1).getValue());
+        assertNull(roundTrip.getChild("list").getValue());
+    }
+
+    private static void assertMergesLikePlexusUtils(String dominantXml, String recessiveXml)
+            throws Exception {
+        Xpp3Dom dominant = parse(dominantXml);
+        Xpp3Dom recessive = parse(recessiveXml);
+        String dominantBefore = dominant.toString();
+        String recessiveBefore = recessive.toString();
+        Xpp3Dom expected = Xpp3Dom.mergeXpp3Dom(parse(dominantXml), parse(recessiveXml));
+        Xpp3Dom merged = ConfigurationConverter.mergeWithDefaults(dominant, recessive);
+        assertEquals(expected.toString(), merged.toString());
+        assertEquals(expected, merged);
+        assertEquals(dominantBefore, dominant.toString());
+        assertEquals(recessiveBefore, recessive.toString());
+    }
+
+    private static Xpp3Dom parse(String xml) throws Exception {
+        return Xpp3DomBuilder.build(new StringReader(xml));
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class JsonWriterTest {
+
+    @Test
+    void writesNestedObjectsAndInlineRows() {
+        JsonWriter json =
+                new JsonWriter()
+                        .beginObject()
+                        .property("label", "a \"quoted\"\nlabel")
+                        .property("cached", true)
+                        .name("steps")
+                        .beginArray();
+        json.beginInlineObject().property("index", 1).property("stepId", null).end();
+        json.beginInlineObject().property("index", 2).name("estimate").nullValue().end();
+        json.end().name("empty").beginArray().end().end();
+        assertEquals(
+                "{\n"
+                        + "  \"label\": \"a \\\"quoted\\\"\\nlabel\",\n"
+                        + "  \"cached\": true,\n"
+                        + "  \"steps\": [\n"
+                        + "    {\"index\": 1, \"stepId\": null},\n"
+                        + "    {\"index\": 2, \"estimate\": null}\n"
+                        + "  ],\n"
+                        + "  \"empty\": []\n"
+                        + "}",
+                json.toString());
+    }
+
+    @Test
+    void escapesControlCharacters() {
+        assertEquals("\"a\\tb\\\\c\\u0001\"", JsonWriter.quote("a\tb\\c\u0001"));
+    }
+}
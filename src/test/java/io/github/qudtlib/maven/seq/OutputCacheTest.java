@@ -0,0 +1,103 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutputCacheTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void storesAndRestoresOutputs() throws Exception {
+        Path project = dir.resolve("project");
+        write(project.resolve("target/gen/A.java"), "class A {}");
+        write(project.resolve("target/gen/sub/B.java"), "class B {}");
+        OutputCache cache = new OutputCache(dir.resolve("cache"), Long.MAX_VALUE, false);
+        cache.store("key", project, List.of("target/gen"));
+        cache.store("key", project, List.of("target/gen"));
+        assertEquals(1, cache.getStores());
+        // the entry was moved into place as a whole
+        try (Stream<Path> entries = Files.list(dir.resolve("cache"))) {
+            assertEquals(List.of(dir.resolve("cache/key")), entries.toList());
+        }
+
+        Path other = dir.resolve("other");
+        assertEquals(2, cache.restore("key", other));
+        assertEquals("class B {}", Files.readString(other.resolve("target/gen/sub/B.java")));
+        assertEquals(-1, cache.restore("missing", other));
+        assertEquals("1 hit, 1 miss (50% hit rate)", cache.getSummary());
+    }
+
+    @Test
+    void storesNothingIfAnOutputIsMissing() throws Exception {
+        Path project = dir.resolve("project");
+        write(project.resolve("target/a.txt"), "a");
+        OutputCache cache = new OutputCache(dir.resolve("cache"), Long.MAX_VALUE, false);
+        cache.store("key", project, List.of("target/a.txt", "target/missing"));
+        assertEquals(0, cache.getStores());
+        assertEquals(-1, cache.restore("key", dir.resolve("other")));
+    }
+
+    @Test
+    void restoresHardLinksOnlyIfConfigured() throws Exception {
+        Path project = dir.resolve("project");
+        write(project.resolve("out.txt"), "cached");
+        Path cacheDirectory = dir.resolve("cache");
+        Path cached = cacheDirectory.resolve("key/files/out.txt");
+        new OutputCache(cacheDirectory, Long.MAX_VALUE, false)
+                .store("key", project, List.of("out.txt"));
+
+        Path copied = dir.resolve("copied");
+        new OutputCache(cacheDirectory, Long.MAX_VALUE, false).restore("key", copied);
+        assertFalse(Files.isSameFile(cached, copied.resolve("out.txt")));
+
+        Path linked = dir.resolve("linked");
+        write(linked.resolve("out.txt"), "stale");
+        new OutputCache(cacheDirectory, Long.MAX_VALUE, true).restore("key", linked);
+        assertTrue(Files.isSameFile(cached, linked.resolve("out.txt")));
+        assertEquals("cached", Files.readString(linked.resolve("out.txt")));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries() throws Exception {
+        Path project = dir.resolve("project");
+        write(project.resolve("out.txt"), "0123456789");
+        Path cacheDirectory = dir.resolve("cache");
+        OutputCache cache = new OutputCache(cacheDirectory, 25, false);
+        long now = System.currentTimeMillis();
+        for (String key : new String[] {"old", "recent", "used"}) {
+            cache.store(key, project, List.of("out.txt"));
+        }
+        setLastUsed(cacheDirectory.resolve("old"), now - 30_000);
+        setLastUsed(cacheDirectory.resolve("recent"), now - 10_000);
+        setLastUsed(cacheDirectory.resolve("used"), now - 20_000);
+
+        assertEquals(1, cache.evict());
+        assertFalse(Files.exists(cacheDirectory.resolve("old")));
+        assertTrue(Files.exists(cacheDirectory.resolve("recent")));
+        assertTrue(Files.exists(cacheDirectory.resolve("used")));
+        assertEquals(0, cache.evict());
+
+        // restoring an entry marks it as used
+        cache.restore("used", dir.resolve("other"));
+        assertEquals(1, new OutputCache(cacheDirectory, 10, false).evict());
+        assertFalse(Files.exists(cacheDirectory.resolve("recent")));
+        assertTrue(Files.exists(cacheDirectory.resolve("used")));
+    }
+
+    private static void setLastUsed(Path entry, long millis) throws Exception {
+        Files.setLastModifiedTime(entry.resolve("manifest"), FileTime.fromMillis(millis));
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.Test;
+
+class ParameterValuesTest {
+
+    @Test
+    void parsesDurations() throws Exception {
+        assertEquals(TimeUnit.SECONDS.toNanos(90), ParameterValues.parseDuration("90s", "timeout"));
+        assertEquals(TimeUnit.SECONDS.toNanos(90), ParameterValues.parseDuration("90", "timeout"));
+        assertEquals(
+                TimeUnit.MILLISECONDS.toNanos(500), ParameterValues.parseDuration("500ms", "t"));
+        assertEquals(TimeUnit.MINUTES.toNanos(15), ParameterValues.parseDuration(" 15 M ", "t"));
+        assertEquals(TimeUnit.HOURS.toNanos(2), ParameterValues.parseDuration("2h", "t"));
+        assertEquals(0, ParameterValues.parseDuration(null, "t"));
+        assertEquals(0, ParameterValues.parseDuration("  ", "t"));
+    }
+
+    @Test
+    void rejectsInvalidDurations() {
+        for (String value : new String[] {"-1s", "1.5s", "10d", "s", "1 s 2"}) {
+            MojoExecutionException e =
+                    assertThrows(
+                            MojoExecutionException.class,
+                            () -> ParameterValues.parseDuration(value, "timeout"),
+                            value);
+            assertTrue(e.getMessage().startsWith("Invalid timeout '" + value + "'"));
+        }
+    }
+
+    @Test
+    void parsesSizes() throws Exception {
+        assertEquals(512, ParameterValues.parseSize("512", "size"));
+        assertEquals(64L << 10, ParameterValues.parseSize("64k", "size"));
+        assertEquals(768L << 20, ParameterValues.parseSize(" 768 M ", "size"));
+        assertEquals(2L << 30, ParameterValues.parseSize("2g", "size"));
+        assertEquals(0, ParameterValues.parseSize(null, "size"));
+        assertEquals(0, ParameterValues.parseSize(" ", "size"));
+    }
+
+    @Test
+    void rejectsInvalidSizes() {
+        for (String value : new String[] {"-1m", "1.5g", "2t", "m", "9999999999g"}) {
+            MojoExecutionException e =
+                    assertThrows(
+                            MojoExecutionException.class,
+                            () -> ParameterValues.parseSize(value, "forkMaxMemory"),
+                            value);
+            assertEquals(
+                    "Invalid forkMaxMemory '" + value + "'. Expected a size such as 512m or 2g",
+                    e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginManagement;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.Test;
+
+class PluginDescriptorCacheTest {
+
+    @Test
+    void indexSkipsManagedEntriesOfBuildPlugins() {
+        Build build = new Build();
+        build.addPlugin(plugin("org.apache.maven.plugins", "maven-antrun-plugin", "3.1.0"));
+        PluginManagement pluginManagement = new PluginManagement();
+        pluginManagement.addPlugin(
+                plugin("org.apache.maven.plugins", "maven-antrun-plugin", "3.1.0"));
+        pluginManagement.addPlugin(plugin("org.codehaus.mojo", "exec-maven-plugin", "3.5.0"));
+        build.setPluginManagement(pluginManagement);
+        Model model = new Model();
+        model.setBuild(build);
+        MavenProject project = new MavenProject(model);
+        project.setPluginArtifactRepositories(new ArrayList<>());
+
+        PluginDescriptorCache.ProjectPluginIndex index =
+                new PluginDescriptorCache.ProjectPluginIndex(project);
+
+        List<Plugin> antrun = index.findByArtifactIds(List.of("maven-antrun-plugin"));
+        assertEquals(1, antrun.size());
+        assertSame(
+                index.getBuildPlugin("org.apache.maven.plugins:maven-antrun-plugin"),
+                antrun.get(0));
+        List<Plugin> exec = index.findByArtifactIds(List.of("exec-maven-plugin"));
+        assertEquals(1, exec.size());
+        assertEquals("3.5.0", exec.get(0).getVersion());
+        assertNull(index.getBuildPlugin("org.codehaus.mojo:exec-maven-plugin"));
+    }
+
+    private static Plugin plugin(String groupId, String artifactId, String version) {
+        Plugin plugin = new Plugin();
+        plugin.setGroupId(groupId);
+        plugin.setArtifactId(artifactId);
+        plugin.setVersion(version);
+        return plugin;
+    }
+}
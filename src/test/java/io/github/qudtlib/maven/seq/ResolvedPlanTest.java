@@ -0,0 +1,78 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResolvedPlanTest {
+
+    @Test
+    void changedStepConfigurationInvalidatesThePlan(@TempDir Path dir) throws Exception {
+        MavenProject project = project();
+        String key = ResolvedPlan.computeKey(project, steps("a"), "g:seq:1.0");
+        String changedKey = ResolvedPlan.computeKey(project, steps("b"), "g:seq:1.0");
+        assertNotEquals(key, changedKey);
+        assertEquals(key, ResolvedPlan.computeKey(project, steps("a"), "g:seq:1.0"));
+        assertNotEquals(key, ResolvedPlan.computeKey(project, steps("a"), "g:seq:1.1"));
+
+        Path file = dir.resolve("seq.plan");
+        new ResolvedPlan(
+                        key,
+                        List.of(
+                                new ResolvedPlan.Entry(
+                                        "g", "a", "1", "goal", "default", null, false, null)))
+                .save(file);
+        assertNull(ResolvedPlan.load(file, changedKey));
+        ResolvedPlan plan = ResolvedPlan.load(file, key);
+        assertNotNull(plan);
+        assertEquals("a", plan.getEntry(0).getArtifactId());
+    }
+
+    @Test
+    void changedMatrixValueInvalidatesThePlan() {
+        MavenProject project = project();
+        String key = ResolvedPlan.computeKey(project, matrixSteps("11"), "g:seq:1.0");
+        assertEquals(key, ResolvedPlan.computeKey(project, matrixSteps("11"), "g:seq:1.0"));
+        assertNotEquals(key, ResolvedPlan.computeKey(project, matrixSteps("17"), "g:seq:1.0"));
+    }
+
+    private static MavenProject project() {
+        Model model = new Model();
+        model.setBuild(new Build());
+        return new MavenProject(model);
+    }
+
+    private static List<SeqMojo.SequenceStep> steps(String value) {
+        SeqMojo.SequenceStep step = new SeqMojo.SequenceStep();
+        step.setPluginCoordinates("g:a:1");
+        step.setGoal("goal");
+        step.setRawConfiguration(
+                new XmlPlexusConfiguration(element("configuration", "message", value)));
+        return List.of(step);
+    }
+
+    private static List<SeqMojo.SequenceStep> matrixSteps(String javaVersion) {
+        Xpp3Dom matrix = new Xpp3Dom("matrix");
+        matrix.addChild(element("variant", "java", "8"));
+        matrix.addChild(element("variant", "java", javaVersion));
+        List<SeqMojo.SequenceStep> steps = steps("@{java}");
+        steps.get(0).setMatrix(new XmlPlexusConfiguration(matrix));
+        return steps;
+    }
+
+    private static Xpp3Dom element(String name, String childName, String value) {
+        Xpp3Dom element = new Xpp3Dom(name);
+        Xpp3Dom child = new Xpp3Dom(childName);
+        child.setValue(value);
+        element.addChild(child);
+        return element;
+    }
+}
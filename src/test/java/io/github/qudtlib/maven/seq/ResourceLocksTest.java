@@ -0,0 +1,38 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+class ResourceLocksTest {
+
+    @Test
+    void waitingForALockCountsAgainstTheTimeout() throws Exception {
+        ResourceLocks locks = ResourceLocks.parse("locks-test-timeout");
+        ResourceLocks.Held hung = locks.acquire(new SystemStreamLog(), "hung@a", 0, "none");
+        StepWatchdog.StepTimeoutException e =
+                assertThrows(
+                        StepWatchdog.StepTimeoutException.class,
+                        () ->
+                                locks.acquire(
+                                        new SystemStreamLog(),
+                                        "waiting@b",
+                                        TimeUnit.MILLISECONDS.toNanos(100),
+                                        "its timeout of 0.100s"));
+        assertTrue(
+                e.getMessage().startsWith("Step waiting@b exceeded its timeout of 0.100s after"));
+        assertTrue(
+                e.getMessage().endsWith("waiting for lock locks-test-timeout, held by step hung@a"),
+                e.getMessage());
+        hung.release();
+        ResourceLocks.Held next =
+                locks.acquire(
+                        new SystemStreamLog(),
+                        "waiting@b",
+                        TimeUnit.MILLISECONDS.toNanos(100),
+                        "its timeout of 0.100s");
+        next.release();
+    }
+}
@@ -0,0 +1,225 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.configuration.DefaultPlexusConfiguration;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StepConditionTest {
+
+    @TempDir Path basedir;
+
+    private final Map<String, String> properties = new HashMap<>();
+    private final Map<String, String> statuses = new HashMap<>();
+
+    @Test
+    void noConditionParsesToNull() throws Exception {
+        assertNull(StepCondition.parse(null, "s", List.of()));
+        assertNull(StepCondition.parse(when(), "s", List.of()));
+    }
+
+    @Test
+    void rejectsInvalidConditions() {
+        assertInvalid(when("unknown", "x"), "unknown condition <unknown>");
+        assertInvalid(when("exists", " "), "<exists> must not be empty");
+        assertInvalid(when("exists", "!pom.xml"), "can be negated");
+        assertInvalid(changed("src/**", ""), "<changed> requires <files> and <since>");
+    }
+
+    @Test
+    void executedMustNameAnUpstreamStep() throws Exception {
+        MojoExecutionException e =
+                assertThrows(
+                        MojoExecutionException.class,
+                        () -> StepCondition.parse(when("executed", "b"), "c", List.of("a")));
+        assertTrue(e.getMessage().contains("must name a step it depends on"), e.getMessage());
+        assertNotNull(StepCondition.parse(when("executed", "!a"), "c", List.of("a")));
+    }
+
+    @Test
+    void executedRejectsStepsOfTheSameParallelBlock() throws Exception {
+        List<StepScheduler.Node> nodes =
+                StepScheduler.buildGraph(
+                        List.of("a", "b", "c", "d"),
+                        Arrays.asList(null, null, null, null),
+                        Arrays.asList(null, "g", "g", null));
+        assertThrows(
+                MojoExecutionException.class,
+                () ->
+                        StepCondition.parse(
+                                when("executed", "b"),
+                                "c",
+                                StepScheduler.getUpstreamIds(nodes.get(2))));
+        // d depends on b and c, and through them on a
+        assertNotNull(
+                StepCondition.parse(
+                        when("executed", "a"), "d", StepScheduler.getUpstreamIds(nodes.get(3))));
+    }
+
+    @Test
+    void onlyPropertyConditionsArePropertiesOnly() throws Exception {
+        assertTrue(StepCondition.parse(when("property", "x"), "s", List.of()).isPropertiesOnly());
+        assertFalse(
+                StepCondition.parse(when("property", "x", "exists", "y"), "s", List.of())
+                        .isPropertiesOnly());
+    }
+
+    @Test
+    void evaluatesProperties() throws Exception {
+        properties.put("set", "true");
+        properties.put("off", "false");
+        properties.put("env", "ci");
+        assertNull(evaluate(when("property", "set")));
+        assertNull(evaluate(when("property", "!off")));
+        assertNull(evaluate(when("property", "!missing")));
+        assertNull(evaluate(when("property", "env=ci")));
+        assertNull(evaluate(when("property", "!env=local")));
+        assertEquals("property off is not set", evaluate(when("property", "off")));
+        assertEquals("property set is set", evaluate(when("property", "!set")));
+        assertEquals("property env is not local", evaluate(when("property", "env=local")));
+    }
+
+    @Test
+    void evaluatesFiles() throws Exception {
+        Files.createDirectories(basedir.resolve("src"));
+        Files.writeString(basedir.resolve("src/a.txt"), "a");
+        assertNull(evaluate(when("exists", "src/a.txt")));
+        assertNull(evaluate(when("exists", "src/*.txt")));
+        assertEquals("no file matches src/*.md", evaluate(when("exists", "src/*.md")));
+        assertNull(evaluate(when("missing", "src/b.txt")));
+        assertEquals("src/a.txt exists", evaluate(when("missing", "src/a.txt")));
+    }
+
+    @Test
+    void evaluatesChangedSince() throws Exception {
+        Files.writeString(basedir.resolve("a.txt"), "a");
+        assertNull(evaluate(changed("*.txt", "marker")), "a missing marker counts as changed");
+        Path marker = Files.writeString(basedir.resolve("marker"), "");
+        Files.setLastModifiedTime(
+                basedir.resolve("a.txt"), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        assertEquals("*.txt unchanged since marker", evaluate(changed("*.txt", "marker")));
+        Files.setLastModifiedTime(
+                marker, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+        assertNull(evaluate(changed("*.txt", "marker")));
+    }
+
+    @Test
+    void evaluatesExecutedSteps() throws Exception {
+        statuses.put("a", "EXECUTED");
+        statuses.put("b", "UP_TO_DATE");
+        statuses.put("c", "FROM_CACHE");
+        assertNull(evaluate(when("executed", "a"), "a", "b", "c"));
+        assertNull(evaluate(when("executed", "c"), "a", "b", "c"));
+        assertNull(evaluate(when("executed", "!b"), "a", "b", "c"));
+        assertEquals("step b was up to date", evaluate(when("executed", "b"), "a", "b", "c"));
+        assertEquals("step a was executed", evaluate(when("executed", "!a"), "a", "b", "c"));
+    }
+
+    @Test
+    void failsIfAnExecutedStepHasNotCompleted() throws Exception {
+        StepCondition condition = StepCondition.parse(when("executed", "a"), "b", List.of("a"));
+        assertThrows(
+                MojoExecutionException.class,
+                () -> condition.evaluate(basedir, properties::get, statuses::get));
+    }
+
+    @Test
+    void evaluatesStepsSkippedWhilePlanningAnAggregateSequence() throws Exception {
+        statuses.put("a", "SKIPPED");
+        statuses.put("g:m|b", "EXECUTED");
+        statuses.put("g:other|a", "EXECUTED");
+        StepCondition condition =
+                StepCondition.parse(when("executed", "a"), "c", List.of("a", "b"));
+        assertEquals(
+                "step a was skipped",
+                condition.evaluate(
+                        basedir,
+                        properties::get,
+                        AggregateSequence.getModuleStatuses(statuses, "g:m|")));
+        assertNull(
+                StepCondition.parse(when("executed", "b"), "c", List.of("a", "b"))
+                        .evaluate(
+                                basedir,
+                                properties::get,
+                                AggregateSequence.getModuleStatuses(statuses, "g:m|")));
+        assertNull(
+                condition.evaluate(
+                        basedir,
+                        properties::get,
+                        AggregateSequence.getModuleStatuses(statuses, "g:other|")));
+    }
+
+    @Test
+    void evaluatesPropertyConditionsInEachModuleOfAnAggregateSequence() throws Exception {
+        MavenProject deployed = module("deployed", "true");
+        MavenProject internal = module("internal", "false");
+        Map<MavenProject, String> skipReasons =
+                AggregateSequence.evaluateCondition(
+                        StepCondition.parse(when("property", "deploy"), "s", List.of()),
+                        List.of(deployed, internal),
+                        (module, name) -> module.getProperties().getProperty(name),
+                        statuses);
+        assertEquals(Map.of(internal, "property deploy is not set"), skipReasons);
+    }
+
+    @Test
+    void reportsTheFirstFailingCheck() throws Exception {
+        assertEquals(
+                "property x is not set",
+                evaluate(when("missing", "nothing", "property", "x", "exists", "nothing")));
+    }
+
+    private String evaluate(PlexusConfiguration when, String... upstream) throws Exception {
+        return StepCondition.parse(when, "s", List.of(upstream))
+                .evaluate(basedir, properties::get, statuses::get);
+    }
+
+    private MavenProject module(String artifactId, String deploy) throws Exception {
+        Model model = new Model();
+        model.setGroupId("g");
+        model.setArtifactId(artifactId);
+        model.getProperties().setProperty("deploy", deploy);
+        MavenProject module = new MavenProject(model);
+        Path dir = Files.createDirectories(basedir.resolve(artifactId));
+        module.setFile(dir.resolve("pom.xml").toFile());
+        return module;
+    }
+
+    private void assertInvalid(PlexusConfiguration when, String message) {
+        MojoExecutionException e =
+                assertThrows(
+                        MojoExecutionException.class,
+                        () -> StepCondition.parse(when, "s", List.of()));
+        assertTrue(e.getMessage().contains(message), e.getMessage());
+    }
+
+    /** Builds a <code>when</code> element from alternating names and values. */
+    private static PlexusConfiguration when(String... checks) {
+        DefaultPlexusConfiguration when = new DefaultPlexusConfiguration("when");
+        for (int i = 0; i < checks.length; i += 2) {
+            when.addChild(checks[i], checks[i + 1]);
+        }
+        return when;
+    }
+
+    private static PlexusConfiguration changed(String files, String since) {
+        DefaultPlexusConfiguration when = new DefaultPlexusConfiguration("when");
+        DefaultPlexusConfiguration changed = new DefaultPlexusConfiguration("changed");
+        changed.addChild("files", files);
+        changed.addChild("since", since);
+        when.addChild(changed);
+        return when;
+    }
+}
@@ -0,0 +1,202 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+class StepSchedulerTest {
+
+    @Test
+    void plainSequenceIsAChain() throws Exception {
+        List<StepScheduler.Node> nodes =
+                StepScheduler.buildGraph(
+                        List.of("a", "b", "c"), Arrays.asList(null, null, null), nulls(3));
+        assertTrue(StepScheduler.isSequential(nodes));
+        assertEquals(Set.of(), ids(nodes.get(0).getDependencies()));
+        assertEquals(Set.of("a"), ids(nodes.get(1).getDependencies()));
+        assertEquals(Set.of("b"), ids(nodes.get(2).getDependencies()));
+    }
+
+    @Test
+    void parallelGroupFormsOneBlock() throws Exception {
+        List<StepScheduler.Node> nodes =
+                StepScheduler.buildGraph(
+                        List.of("a", "b", "c", "d"),
+                        Arrays.asList(null, null, null, null),
+                        Arrays.asList(null, "g", "g", null));
+        assertFalse(StepScheduler.isSequential(nodes));
+        assertEquals(Set.of("a"), ids(nodes.get(1).getDependencies()));
+        assertEquals(Set.of("a"), ids(nodes.get(2).getDependencies()));
+        assertEquals(Set.of("b", "c"), ids(nodes.get(3).getDependencies()));
+    }
+
+    @Test
+    void dependsOnReplacesTheBlockEdges() throws Exception {
+        List<StepScheduler.Node> nodes =
+                StepScheduler.buildGraph(
+                        List.of("a", "b", "c"), Arrays.asList(null, null, " a , "), nulls(3));
+        assertEquals(Set.of("a"), ids(nodes.get(2).getDependencies()));
+        assertFalse(StepScheduler.isSequential(nodes));
+    }
+
+    @Test
+    void rejectsCycles() {
+        MojoExecutionException e =
+                assertThrows(
+                        MojoExecutionException.class,
+                        () ->
+                                StepScheduler.buildGraph(
+                                        List.of("a", "b", "c"),
+                                        Arrays.asList(null, "c", "b"),
+                                        nulls(3)));
+        assertTrue(e.getMessage().contains("cycle"), e.getMessage());
+        assertTrue(e.getMessage().contains("b, c"), e.getMessage());
+    }
+
+    @Test
+    void rejectsUnknownAndDuplicateSteps() {
+        assertThrows(
+                MojoExecutionException.class,
+                () ->
+                        StepScheduler.buildGraph(
+                                List.of("a", "b"), Arrays.asList(null, "x"), nulls(2)));
+        assertThrows(
+                MojoExecutionException.class,
+                () ->
+                        StepScheduler.buildGraph(
+                                List.of("a", "a"), Arrays.asList(null, null), nulls(2)));
+    }
+
+    @Test
+    void sequentialChainRunsOnTheCallingThread() throws Exception {
+        List<StepScheduler.Node> nodes =
+                StepScheduler.buildGraph(
+                        List.of("a", "b", "c"), Arrays.asList(null, null, null), nulls(3));
+        List<String> order = new ArrayList<>();
+        Thread caller = Thread.currentThread();
+        new StepScheduler(8, new SystemStreamLog())
+                .run(
+                        nodes,
+                        node -> {
+                            assertSame(caller, Thread.currentThread());
+                            order.add(node.getId());
+                        });
+        assertEquals(List.of("a", "b", "c"), order);
+    }
+
+    @Test
+    void parallelStepsRespectDependencies() throws Exception {
+        List<StepScheduler.Node> nodes =
+                StepScheduler.buildGraph(
+                        List.of("a", "b", "c", "d"),
+                        Arrays.asList(null, null, null, null),
+                        Arrays.asList(null, "g", "g", null));
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        new StepScheduler(4, new SystemStreamLog()).run(nodes, node -> order.add(node.getId()));
+        assertEquals(4, order.size());
+        assertEquals("a", order.get(0));
+        assertEquals("d", order.get(3));
+    }
+
+    @Test
+    void failureStopsLaterSteps() throws Exception {
+        List<StepScheduler.Node> nodes =
+                StepScheduler.buildGraph(
+                        List.of("a", "b", "c"),
+                        Arrays.asList(null, null, null),
+                        Arrays.asList("g", "g", null));
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        MojoExecutionException e =
+                assertThrows(
+                        MojoExecutionException.class,
+                        () ->
+                                new StepScheduler(2, new SystemStreamLog())
+                                        .run(
+                                                nodes,
+                                                node -> {
+                                                    order.add(node.getId());
+                                                    if (node.getId().equals("a")) {
+                                                        throw new MojoExecutionException("boom");
+                                                    }
+                                                }));
+        assertEquals("boom", e.getMessage());
+        assertFalse(order.contains("c"));
+    }
+
+    @Test
+    void stepThatIsNotThreadSafeExecutesAlone() throws Exception {
+        List<StepScheduler.Node> nodes =
+                StepScheduler.buildGraph(
+                        List.of("a", "b", "c", "d"),
+                        Arrays.asList(null, null, null, null),
+                        Arrays.asList("g", "g", "g", "g"));
+        StepScheduler scheduler = new StepScheduler(4, new SystemStreamLog());
+        AtomicInteger executing = new AtomicInteger();
+        AtomicInteger maxWithUnsafe = new AtomicInteger();
+        scheduler.run(
+                nodes,
+                node -> {
+                    boolean threadSafe = !node.getId().equals("b");
+                    StepScheduler.Permits permits =
+                            scheduler.beginExecution(node.getId(), "test:goal", threadSafe);
+                    try {
+                        int current = executing.incrementAndGet();
+                        if (!threadSafe) {
+                            maxWithUnsafe.set(current);
+                        }
+                        Thread.sleep(50);
+                        if (!threadSafe) {
+                            maxWithUnsafe.accumulateAndGet(executing.get(), Math::max);
+                        }
+                        executing.decrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        permits.release();
+                    }
+                });
+        assertEquals(1, maxWithUnsafe.get());
+    }
+
+    @Test
+    void criticalPathFollowsTheSlowestChain() throws Exception {
+        List<StepScheduler.Node> nodes =
+                StepScheduler.buildGraph(
+                        List.of("a", "fast", "slow", "d"),
+                        Arrays.asList(null, null, null, null),
+                        Arrays.asList(null, "g", "g", null));
+        StepScheduler scheduler = new StepScheduler(1, new SystemStreamLog());
+        scheduler.run(
+                nodes,
+                node -> {
+                    if (node.getId().equals("slow")) {
+                        try {
+                            Thread.sleep(100);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+        assertEquals(List.of("a", "slow", "d"), ids(scheduler.criticalPath(nodes)));
+    }
+
+    private static List<String> nulls(int count) {
+        return Arrays.asList(new String[count]);
+    }
+
+    private static List<String> ids(List<StepScheduler.Node> nodes) {
+        List<String> ids = new ArrayList<>();
+        nodes.forEach(node -> ids.add(node.getId()));
+        return ids;
+    }
+
+    private static Set<String> ids(Set<StepScheduler.Node> nodes) {
+        Set<String> ids = new HashSet<>();
+        nodes.forEach(node -> ids.add(node.getId()));
+        return ids;
+    }
+}
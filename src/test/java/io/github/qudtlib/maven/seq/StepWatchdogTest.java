@@ -0,0 +1,69 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StepWatchdogTest {
+
+    @TempDir Path dumpDirectory;
+
+    @Test
+    void runsWithoutTimeoutOnTheCallingThread() throws Exception {
+        Thread caller = Thread.currentThread();
+        AtomicBoolean ran = new AtomicBoolean();
+        try (StepWatchdog watchdog = new StepWatchdog(dumpDirectory, new SystemStreamLog())) {
+            watchdog.run(
+                    "s",
+                    0,
+                    "",
+                    0,
+                    () -> {
+                        ran.set(Thread.currentThread() == caller);
+                        return null;
+                    });
+        }
+        assertTrue(ran.get());
+    }
+
+    @Test
+    void timeoutFailsTheStepAndReportsWhenItsThreadEnds() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch stepEnded = new CountDownLatch(1);
+        StepWatchdog.StepTimeoutException timeout;
+        try (StepWatchdog watchdog = new StepWatchdog(dumpDirectory, new SystemStreamLog())) {
+            timeout =
+                    assertThrows(
+                            StepWatchdog.StepTimeoutException.class,
+                            () ->
+                                    watchdog.run(
+                                            "slow",
+                                            TimeUnit.MILLISECONDS.toNanos(50),
+                                            "its timeout of 50ms",
+                                            0,
+                                            () -> {
+                                                // ignores the interrupt until released
+                                                while (release.getCount() > 0) {
+                                                    try {
+                                                        release.await();
+                                                    } catch (InterruptedException e) {
+                                                        // keep running
+                                                    }
+                                                }
+                                                return null;
+                                            }));
+        }
+        assertTrue(timeout.getMessage().startsWith("Step slow exceeded its timeout of 50ms"));
+        assertTrue(timeout.isStepRunning());
+        release.countDown();
+        timeout.whenStepEnds(stepEnded::countDown);
+        assertTrue(stepEnded.await(5, TimeUnit.SECONDS));
+        assertFalse(timeout.isStepRunning());
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TimingHistoryTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void baselineIsTheMedianOfTheWindow() throws Exception {
+        Path file = dir.resolve("history.tsv");
+        TimingHistory history = TimingHistory.load(file, 5);
+        for (long nanos : new long[] {900, 100, 300, 200}) {
+            history.record("step", nanos);
+        }
+        history.save();
+        history = TimingHistory.load(file, 5);
+        // too few samples for a baseline, but enough for an estimate
+        assertEquals(-1, history.getMedianNanos("step"));
+        assertEquals(250, history.getEstimateNanos("step"));
+        assertEquals(-1, history.getEstimateNanos("other"));
+
+        history.record("step", 400);
+        history.save();
+        assertEquals(300, TimingHistory.load(file, 5).getMedianNanos("step"));
+
+        // the window holds the latest executions only: 200, 400 and 50
+        history.record("step", 50);
+        history.save();
+        history = TimingHistory.load(file, 3);
+        assertEquals(3, history.getSampleCount("step"));
+        assertEquals(200, history.getEstimateNanos("step"));
+    }
+
+    @Test
+    void compactsTheFileToTheWindow() throws Exception {
+        Path file = dir.resolve("history.tsv");
+        TimingHistory history = TimingHistory.load(file, 2);
+        for (int i = 1; i <= 8; i++) {
+            history.record("a", i);
+        }
+        history.record("b", 100);
+        history.save();
+        // 9 lines do not exceed 4 times the 3 retained durations yet
+        assertEquals(9, Files.readAllLines(file).size());
+
+        for (int i = 9; i <= 12; i++) {
+            history.record("a", i);
+        }
+        history.save();
+        assertEquals(3, Files.readAllLines(file).size());
+        history = TimingHistory.load(file, 2);
+        assertEquals(2, history.getSampleCount("a"));
+        assertEquals(11, history.getEstimateNanos("a"));
+        assertEquals(100, history.getEstimateNanos("b"));
+    }
+
+    @Test
+    void concurrentSavesLoseNoDurations() throws Exception {
+        Path file = dir.resolve("history.tsv");
+        int builds = 8;
+        int steps = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(builds);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int b = 0; b < builds; b++) {
+                String key = "build" + b;
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    for (int s = 0; s < steps; s++) {
+                                        TimingHistory history = TimingHistory.load(file, steps);
+                                        history.record(key, s);
+                                        history.save();
+                                    }
+                                    return null;
+                                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        TimingHistory history = TimingHistory.load(file, steps);
+        for (int b = 0; b < builds; b++) {
+            assertEquals(steps, history.getSampleCount("build" + b));
+        }
+        assertEquals(builds * steps, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void ignoresDamagedLines() throws Exception {
+        Path file = dir.resolve("history.tsv");
+        Files.writeString(file, "1\tstep\t10\nbroken\n2\tstep\tx\n3\tstep\t20\n");
+        assertEquals(2, TimingHistory.load(file, 5).getSampleCount("step"));
+        assertEquals(
+                -1, TimingHistory.load(dir.resolve("missing.tsv"), 5).getEstimateNanos("step"));
+    }
+}
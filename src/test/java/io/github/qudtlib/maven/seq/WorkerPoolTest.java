@@ -0,0 +1,150 @@
+package io.github.qudtlib.maven.seq;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkerPoolTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void reusesAWorkerAndCopiesTheOutputOfEachRequest() throws Exception {
+        List<String> command = command();
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        assertEquals(3, run(command, 3, 0, 2000, first, 0, 0));
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        assertEquals(0, run(command, 0, 0, 2000, second, 0, 0));
+
+        // all output arrives before the step ends, without the end marker
+        List<String> lines = lines(first);
+        assertEquals(2001, lines.size());
+        assertEquals("line 1999", lines.get(2000));
+        assertFalse(first.toString(StandardCharsets.UTF_8).contains(ForkedStepWorker.OUTPUT_END));
+        assertEquals("execution 1 of " + pid(first), lines.get(0));
+        assertEquals("execution 2 of " + pid(first), lines(second).get(0));
+    }
+
+    @Test
+    void retiresWorkersAfterMaxExecutions() throws Exception {
+        List<String> command = command();
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        run(command, 0, 0, 0, first, 1, 0);
+        // the retired worker was asked to exit
+        assertTrue(Files.exists(dir.resolve("exited-" + pid(first))));
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        run(command, 0, 0, 0, second, 1, 0);
+        assertNotEquals(pid(first), pid(second));
+        assertEquals("execution 1 of " + pid(second), lines(second).get(0));
+    }
+
+    @Test
+    void retiresWorkersAboveMaxMemory() throws Exception {
+        List<String> command = command();
+        ByteArrayOutputStream small = new ByteArrayOutputStream();
+        run(command, 0, 100, 0, small, 0, 1000);
+        ByteArrayOutputStream large = new ByteArrayOutputStream();
+        run(command, 0, 2000, 0, large, 0, 1000);
+        assertEquals(pid(small), pid(large));
+        assertTrue(Files.exists(dir.resolve("exited-" + pid(large))));
+        ByteArrayOutputStream next = new ByteArrayOutputStream();
+        run(command, 0, 0, 0, next, 0, 1000);
+        assertNotEquals(pid(large), pid(next));
+    }
+
+    /** A command line of its own, so that tests do not share idle workers. */
+    private List<String> command() {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(FakeWorker.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+        command.add(FakeWorker.class.getName());
+        command.add(dir.toString());
+        return command;
+    }
+
+    private int run(
+            List<String> command,
+            int exitCode,
+            long heap,
+            int lines,
+            ByteArrayOutputStream output,
+            int maxExecutions,
+            long maxMemoryBytes)
+            throws Exception {
+        Properties step = new Properties();
+        step.setProperty("exitCode", String.valueOf(exitCode));
+        step.setProperty("heap", String.valueOf(heap));
+        step.setProperty("lines", String.valueOf(lines));
+        Path request = Files.createTempFile(dir, "request", ".properties");
+        WorkerPool.writeRequest(request, dir.toString(), dir.toString(), List.of(), step);
+        return WorkerPool.getInstance()
+                .run(
+                        command,
+                        request,
+                        new PrintStream(output, true, StandardCharsets.UTF_8),
+                        maxExecutions,
+                        maxMemoryBytes,
+                        "step",
+                        new SystemStreamLog());
+    }
+
+    private static List<String> lines(ByteArrayOutputStream output) {
+        return output.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private static String pid(ByteArrayOutputStream output) {
+        String first = lines(output).get(0);
+        return first.substring(first.lastIndexOf(' ') + 1);
+    }
+
+    /**
+     * Speaks the protocol of {@link ForkedStepWorker}, answering each request with the exit code,
+     * live heap and number of output lines it asks for, and leaves a file behind when asked to
+     * exit.
+     */
+    static class FakeWorker {
+
+        public static void main(String[] args) throws Exception {
+            BufferedReader requests =
+                    new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            long pid = ProcessHandle.current().pid();
+            System.out.println("READY");
+            System.out.flush();
+            int executions = 0;
+            String line;
+            while ((line = requests.readLine()) != null && !line.equals("EXIT")) {
+                Properties request = new Properties();
+                try (Reader reader =
+                        Files.newBufferedReader(
+                                Path.of(line.substring(4)), StandardCharsets.UTF_8)) {
+                    request.load(reader);
+                }
+                System.err.println("execution " + ++executions + " of " + pid);
+                for (int i = 0; i < Integer.parseInt(request.getProperty("lines")); i++) {
+                    System.err.println("line " + i);
+                }
+                System.err.println(ForkedStepWorker.OUTPUT_END);
+                System.err.flush();
+                System.out.println(
+                        "DONE "
+                                + request.getProperty("exitCode")
+                                + " "
+                                + request.getProperty("heap"));
+                System.out.flush();
+            }
+            if (line != null) {
+                Files.createFile(Path.of(args[0], "exited-" + pid));
+            }
+        }
+    }
+}